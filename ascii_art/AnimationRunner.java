@@ -0,0 +1,278 @@
+package ascii_art;
+
+import java.io.IOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import ascii_art.AsciiArtAlgorithm.TooSmallSetException;
+import ascii_output.AnimationOutput;
+import ascii_output.ConsoleAnimationOutput;
+import ascii_output.HtmlAnimationOutput;
+import image.FrameSequence;
+import image.Image;
+import image.PrepareImage;
+import image_char_matching.CharMatcherSnapshot;
+import image_char_matching.SubImgCharMatcher;
+
+
+/**
+ * The AnimationRunner class converts a sequence of frames, a directory of numbered images or
+ * an animated GIF, to an ascii animation played in the console or written as an html player.
+ * Decoding, brightness and matching with output run as a pipeline of three threads joined by
+ * bounded queues, so the stages of consecutive frames overlap. Cells whose brightness barely
+ * changed from the previous frame keep their char without being matched again.
+ * The frames per second achieved, and the time each stage was busy, go to standard error.
+ * Usage: java ascii_art.AnimationRunner [options] &lt;frame directory or animated image&gt;
+ */
+public class AnimationRunner {
+    /**
+     * Constants for the animation runner.
+     */
+    private static final String RES_OPTION = "--res";
+    private static final String CHARS_OPTION = "--chars";
+    private static final String ROUND_OPTION = "--round";
+    private static final String OUTPUT_OPTION = "--output";
+    private static final String OUT_OPTION = "--out";
+    private static final String FPS_OPTION = "--fps";
+    private static final String THRESHOLD_OPTION = "--threshold";
+    private static final String MIN_PADDING_OPTION = "--min-padding";
+    private static final String HTML = "html";
+    private static final String CONSOLE = "console";
+    private static final String DEFAULT_OUT = "out.html";
+    private static final String HTML_FONT = "Courier New";
+    private static final int DEFAULT_RESOLUTION = 64;
+    private static final double DEFAULT_FPS = 10;
+    /**
+     * About one gray level out of 256.
+     */
+    private static final double DEFAULT_THRESHOLD = 1.0 / 256;
+    private static final int QUEUE_FRAMES = 4;
+    private static final char[] DEFAULT_CHAR_LIST = {'0', '1', '2', '3', '4', '5', '6', '7', '8', '9'};
+    private static final double NANOS_IN_MILLI = 1e6;
+    private static final double NANOS_IN_SECOND = 1e9;
+    private static final String USAGE =
+            "Usage: java ascii_art.AnimationRunner [--res N] [--chars SPEC] [--round up|down|abs]\n" +
+            "       [--output console|html] [--out FILE] [--fps N] [--threshold T] [--min-padding]\n" +
+            "       <frame directory or animated image>";
+
+    /**
+     * The settings of the animation.
+     */
+    private String source;
+    private int resolution = DEFAULT_RESOLUTION;
+    private char[] chars = DEFAULT_CHAR_LIST;
+    private String round = SubImgCharMatcher.ROUND_ABS;
+    private String output = CONSOLE;
+    private String outFile = DEFAULT_OUT;
+    private double framesPerSecond = DEFAULT_FPS;
+    private double threshold = DEFAULT_THRESHOLD;
+    private boolean powerOfTwoPadding = true;
+
+    /**
+     * A frame passed between the stages of the pipeline: its value, or the failure of an
+     * earlier stage, or neither after the last frame.
+     * @param value the frame in the form the next stage takes.
+     * @param error the failure of an earlier stage, or null.
+     * @param <T> the form of the frame.
+     */
+    private record Frame<T>(T value, Exception error) {
+        boolean isLast() {
+            return value == null;
+        }
+    }
+
+    /**
+     * Parses the command line.
+     * @param args the command line arguments.
+     * @throws IllegalArgumentException if the arguments are not formatted correctly.
+     */
+    private AnimationRunner(String[] args) throws IllegalArgumentException {
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            if (!arg.startsWith("--")) {
+                if (source != null) {
+                    throw new IllegalArgumentException("more than one source.");
+                }
+                source = arg;
+                continue;
+            }
+            if (arg.equals(MIN_PADDING_OPTION)) {
+                powerOfTwoPadding = false;
+                continue;
+            }
+            if (i + 1 == args.length) {
+                throw new IllegalArgumentException("missing value for " + arg);
+            }
+            String value = args[++i];
+            switch (arg) {
+                case RES_OPTION -> resolution = Integer.parseInt(value);
+                case CHARS_OPTION -> chars = Shell.makeCharArray(value);
+                case ROUND_OPTION -> round = value;
+                case OUTPUT_OPTION -> output = value;
+                case OUT_OPTION -> outFile = value;
+                case FPS_OPTION -> framesPerSecond = Double.parseDouble(value);
+                case THRESHOLD_OPTION -> threshold = Double.parseDouble(value);
+                default -> throw new IllegalArgumentException("unknown option " + arg);
+            }
+        }
+        if (source == null || resolution < 1 || framesPerSecond < 0 || threshold < 0 ||
+                !(output.equals(CONSOLE) || output.equals(HTML)) ||
+                !(round.equals(SubImgCharMatcher.ROUND_UP) || round.equals(SubImgCharMatcher.ROUND_DOWN) ||
+                        round.equals(SubImgCharMatcher.ROUND_ABS))) {
+            throw new IllegalArgumentException("incorrect format.");
+        }
+    }
+
+    /**
+     * The decoding stage: reads the frames in order.
+     * @return the time the stage was busy.
+     */
+    private long decode(FrameSequence frames, BlockingQueue<Frame<Image>> decoded)
+            throws InterruptedException {
+        long busy = 0;
+        try {
+            while (true) {
+                long start = System.nanoTime();
+                Image image = frames.next();
+                busy += System.nanoTime() - start;
+                decoded.put(new Frame<>(image, null));
+                if (image == null) {
+                    return busy;
+                }
+            }
+        }
+        catch (IOException | RuntimeException e) {
+            decoded.put(new Frame<>(null, e));
+            return busy;
+        }
+    }
+
+    /**
+     * The brightness stage: computes the brightness of the cells of each frame.
+     * @return the time the stage was busy.
+     */
+    private long brightness(BlockingQueue<Frame<Image>> decoded, BlockingQueue<Frame<double[][]>> prepared)
+            throws InterruptedException {
+        long busy = 0;
+        while (true) {
+            Frame<Image> frame = decoded.take();
+            if (frame.isLast()) {
+                prepared.put(new Frame<>(null, frame.error()));
+                return busy;
+            }
+            long start = System.nanoTime();
+            try {
+                double[][] brightness = new PrepareImage(frame.value(), 1, powerOfTwoPadding)
+                        .getImageBrightness(resolution);
+                busy += System.nanoTime() - start;
+                prepared.put(new Frame<>(brightness, null));
+            }
+            catch (RuntimeException e) {
+                prepared.put(new Frame<>(null, e));
+                return busy;
+            }
+        }
+    }
+
+    /**
+     * Runs the pipeline over all the frames, and reports the frames per second and the time
+     * each stage was busy.
+     * @throws IOException if the frames could not be read.
+     * @throws TooSmallSetException if the character set is too small.
+     * @throws InterruptedException if interrupted while waiting for a stage.
+     */
+    private void run() throws IOException, TooSmallSetException, InterruptedException {
+        SubImgCharMatcher builder = new SubImgCharMatcher(chars);
+        builder.setTypeOfRound(round);
+        CharMatcherSnapshot matcher = builder.snapshot();
+        if (matcher.size() < 2) {
+            throw new TooSmallSetException();
+        }
+        TemporalReuse reuse = new TemporalReuse(matcher, threshold);
+        AnimationOutput outputMethod = output.equals(HTML) ?
+                new HtmlAnimationOutput(outFile, HTML_FONT) : new ConsoleAnimationOutput();
+        BlockingQueue<Frame<Image>> decoded = new ArrayBlockingQueue<>(QUEUE_FRAMES);
+        BlockingQueue<Frame<double[][]>> prepared = new ArrayBlockingQueue<>(QUEUE_FRAMES);
+        ExecutorService stages = Executors.newFixedThreadPool(2);
+        long start = System.nanoTime();
+        long matchNanos = 0;
+        int frameCount = 0;
+        try (FrameSequence frames = new FrameSequence(source)) {
+            Future<Long> decodeNanos = stages.submit(() -> decode(frames, decoded));
+            Future<Long> brightnessNanos = stages.submit(() -> brightness(decoded, prepared));
+            while (true) {
+                Frame<double[][]> frame = prepared.take();
+                if (frame.isLast()) {
+                    rethrow(frame.error());
+                    break;
+                }
+                long matchStart = System.nanoTime();
+                char[][] art = reuse.match(frame.value());
+                if (frameCount == 0) {
+                    outputMethod.begin(art[0].length, framesPerSecond);
+                }
+                outputMethod.frame(art);
+                matchNanos += System.nanoTime() - matchStart;
+                frameCount++;
+            }
+            if (frameCount > 0) {
+                outputMethod.end();
+            }
+            double seconds = (System.nanoTime() - start) / NANOS_IN_SECOND;
+            long cells = reuse.getReused() + reuse.getMatched();
+            System.err.printf("%d frames in %.2f s: %.1f frames/s, %.1f%% of cells reused%n",
+                    frameCount, seconds, frameCount / seconds,
+                    cells == 0 ? 0 : 100.0 * reuse.getReused() / cells);
+            System.err.printf("busy: decode %.1f ms, brightness %.1f ms, match and output %.1f ms%n",
+                    decodeNanos.get() / NANOS_IN_MILLI, brightnessNanos.get() / NANOS_IN_MILLI,
+                    matchNanos / NANOS_IN_MILLI);
+        }
+        catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+        finally {
+            stages.shutdownNow();
+        }
+    }
+
+    /**
+     * Throws the failure of an earlier stage, if any.
+     */
+    private static void rethrow(Exception error) throws IOException {
+        if (error instanceof IOException e) {
+            throw e;
+        }
+        if (error instanceof RuntimeException e) {
+            throw e;
+        }
+    }
+
+    /**
+     * Main method for the animation runner.
+     * @param args the options and the frame directory or animated image.
+     */
+    public static void main(String[] args) {
+        AnimationRunner runner;
+        try {
+            runner = new AnimationRunner(args);
+        }
+        catch (IllegalArgumentException e) {
+            System.out.println("Did not run animation due to " + e.getMessage());
+            System.out.println(USAGE);
+            return;
+        }
+        try {
+            runner.run();
+        }
+        catch (IOException | TooSmallSetException | IllegalArgumentException e) {
+            System.out.println("Did not run animation due to " + e.getMessage());
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -1,8 +1,18 @@
 package ascii_art;
 
+import java.io.IOException;
+import java.util.function.DoubleUnaryOperator;
+
+import ascii_output.ColorAsciiOutput;
+import ascii_output.StreamingAsciiOutput;
+import image.ColoredCells;
+import image.Dithering;
 import image.Image;
 import image.PrepareImage;
-import image_char_matching.SubImgCharMatcher;
+import image.StreamingImage;
+import image_char_matching.CharMatcherSnapshot;
+import image_char_matching.DotGlyphs;
+import image_char_matching.GlyphMask;
 
 
 /**
@@ -12,69 +22,340 @@ import image_char_matching.SubImgCharMatcher;
 class AsciiArtAlgorithm {
 
     /**
-     * The image snapshot and last image are used to avoid recalculating the brightness matrix
+     * The smallest difference in brightness inside a cell for it to be matched by shape,
+     * flatter cells are matched by brightness alone.
+     */
+    private static final double SHAPE_MIN_CONTRAST = 0.25;
+
+    /**
+     * The threshold of dots dithered to black (0) and white (1), halfway between them.
+     */
+    private static final double DITHERED_DOT_THRESHOLD = 0.5;
+
+    /**
+     * The image and cache, or the prepared image when there is no cache, are where the
+     * brightness matrix comes from.
      */
-    private static ImageSnapshot imgSnap = null;
-    private static PrepareImage lastImage = null;
+    private final Image image;
+    private final BrightnessCache cache;
+    private final PrepareImage preparedImage;
 
     /**
-     * The image, resolution, charMatcher, and outputMethod are the settings of the algorithm.
+     * The resolution and charMatcher are the settings of the algorithm.
+     * The charMatcher is an immutable snapshot, so renders may share it.
      */
-    private final PrepareImage image;
     private final int resolution;
-    private final SubImgCharMatcher characterMatcher;
+    private final CharMatcherSnapshot characterMatcher;
+
+    /**
+     * The metrics the stages of the runs are recorded in, or null.
+     */
+    private StageMetrics metrics;
+
+    /**
+     * Whether cells with enough contrast are matched to chars by shape.
+     */
+    private boolean shapeMatching = false;
 
     /**
-     * Constructor for the AsciiArtAlgorithm class. Initializes the image, resolution,
-     * charMatcher, and outputMethod.
-     * Sets the change flags to true.
+     * The glyphs the sub images are drawn with instead of matching chars, or null.
+     */
+    private DotGlyphs dotGlyphs = null;
+
+    /**
+     * The dithering of the brightness before it is matched to chars, or null.
+     */
+    private Dithering dithering = null;
+
+    /**
+     * Constructor for the AsciiArtAlgorithm class.
+     * The brightness matrix is taken from the cache, so repeated renders of the same image
+     * do not recalculate it.
      * @param img the image to be converted to ascii art.
      * @param resolution the resolution of the ascii art.
      * @param characterMatcher the character matcher to be used.
+     * @param cache the cache of brightness matrices.
      */
-    public AsciiArtAlgorithm(Image img, int resolution, SubImgCharMatcher characterMatcher){
-        if (lastImage != null && lastImage.getOriginalImage() == img){
-            image = lastImage;
-        } else {
-            image = new PrepareImage(img);
-            lastImage = image;
-            imgSnap = null;
-        }
+    public AsciiArtAlgorithm(Image img, int resolution, CharMatcherSnapshot characterMatcher,
+                             BrightnessCache cache){
+        this.image = img;
+        this.cache = cache;
+        this.preparedImage = null;
+        this.resolution = resolution;
+        this.characterMatcher = characterMatcher;
+    }
+
+    /**
+     * Constructor for the AsciiArtAlgorithm class, for an image that is already prepared.
+     * Any number of these may run at once, sharing the character matcher snapshot.
+     * @param image the prepared image to be converted to ascii art.
+     * @param resolution the resolution of the ascii art.
+     * @param characterMatcher the character matcher to be used.
+     */
+    public AsciiArtAlgorithm(PrepareImage image, int resolution, CharMatcherSnapshot characterMatcher){
+        this.image = image.getOriginalImage();
+        this.cache = null;
+        this.preparedImage = image;
         this.resolution = resolution;
         this.characterMatcher = characterMatcher;
     }
 
+    /**
+     * Records the prepare, brightness, match (and for colored runs, output) stages of the
+     * following runs in the given metrics.
+     * @param metrics the metrics, or null to stop recording.
+     */
+    void setMetrics(StageMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Matches the cells of the following runs with enough contrast to the char whose glyph is
+     * closest in shape, rather than closest in brightness. Flat cells are still matched by brightness.
+     * @param shapeMatching whether to match by shape.
+     */
+    void setShapeMatching(boolean shapeMatching) {
+        this.shapeMatching = shapeMatching;
+    }
+
+    /**
+     * Draws the following runs with dots, each char showing DotGlyphs.SUB_COLUMNS x SUB_ROWS
+     * sub images of the image at twice the resolution, so the resolution is still the number
+     * of chars along the width. The character matcher is not used. Colored runs still match chars.
+     * @param dotGlyphs the glyphs to draw with, or null to match chars.
+     */
+    void setDotGlyphs(DotGlyphs dotGlyphs) {
+        this.dotGlyphs = dotGlyphs;
+    }
+
+    /**
+     * Dithers the brightness of the following runs to the brightness levels of the chars before
+     * matching it, or for dots, to black and white around the threshold of the dots.
+     * Cells matched by shape are not dithered, but the error of their brightness still spreads.
+     * @param dithering the dithering, or null not to dither.
+     */
+    void setDithering(Dithering dithering) {
+        this.dithering = dithering;
+    }
+
     /**
      * The main method of the class, with the current settings, generates the ascii art and returns it.
+     * With a cache, a brightness matrix rendered again is matched by its buckets of brightness,
+     * unless matching by shape or dithering.
      * @return char[][] defining the art.
      * @throws TooSmallSetException if the character set is too small.
+     * @throws IllegalArgumentException if drawing with dots, and twice the resolution is out of bounds.
      */
     public char[][] run() throws TooSmallSetException{
-        if (characterMatcher.getCharSet().size() < 2){
+        if (dotGlyphs != null){
+            return runDots();
+        }
+        if (characterMatcher.size() < 2){
             throw new TooSmallSetException();
         }
+        if (shapeMatching){
+            PrepareImage prepared = getPreparedImage();
+            StageMetrics.Probe probe = StageMetrics.start(metrics, StageMetrics.BRIGHTNESS);
+            double[][] brightness = getBrightnessMatrix();
+            long[][][] masks = prepared.getCellMasks(resolution, GlyphMask.SIDE, SHAPE_MIN_CONTRAST);
+            StageMetrics.stop(probe);
+            brightness = dither(brightness, cache != null);
+            probe = StageMetrics.start(metrics, StageMetrics.MATCH);
+            char[][] asciiArt = match(brightness, masks);
+            StageMetrics.stop(probe);
+            return asciiArt;
+        }
+        if (cache != null && dithering == null){
+            getPreparedImage();
+            StageMetrics.Probe probe = StageMetrics.start(metrics, StageMetrics.BRIGHTNESS);
+            BrightnessIndex index = cache.getBrightnessIndex(image, resolution);
+            StageMetrics.stop(probe);
+            probe = StageMetrics.start(metrics, StageMetrics.MATCH);
+            char[][] asciiArt = index.map(characterMatcher);
+            StageMetrics.stop(probe);
+            return asciiArt;
+        }
+        StageMetrics.Probe probe = StageMetrics.start(metrics, StageMetrics.BRIGHTNESS);
         double[][] brightness = getBrightnessMatrix();
+        StageMetrics.stop(probe);
+        brightness = dither(brightness, cache != null);
+        probe = StageMetrics.start(metrics, StageMetrics.MATCH);
+        char[][] asciiArt = match(brightness, null);
+        StageMetrics.stop(probe);
+        return asciiArt;
+    }
 
-        
+    /**
+     * Draws the art with dots, set where the sub images are darker than the mean of the image,
+     * or where the sub images dithered to black and white around the mean are black.
+     * @return char[][] defining the art.
+     */
+    private char[][] runDots(){
+        getPreparedImage();
+        StageMetrics.Probe probe = StageMetrics.start(metrics, StageMetrics.BRIGHTNESS);
+        double[][] brightness = getBrightnessMatrix(resolution * DotGlyphs.SUB_COLUMNS);
+        StageMetrics.stop(probe);
+        double threshold = DotGlyphs.meanBrightness(brightness);
+        if (dithering != null){
+            brightness = dither(brightness, cache != null, value -> value < threshold ? 0 : 1, 2);
+        }
+        probe = StageMetrics.start(metrics, StageMetrics.MATCH);
+        char[][] asciiArt = dotGlyphs.toGlyphs(brightness, dithering != null ? DITHERED_DOT_THRESHOLD : threshold);
+        StageMetrics.stop(probe);
+        return asciiArt;
+    }
+
+    /**
+     * Returns the prepared image, taking it from the cache if there is one, which is timed as the
+     * prepare stage. An image prepared before the algorithm was made was timed by whoever prepared it,
+     * so it is not counted again.
+     * @return the prepared image.
+     */
+    private PrepareImage getPreparedImage(){
+        if (cache == null){
+            return preparedImage;
+        }
+        StageMetrics.Probe probe = StageMetrics.start(metrics, StageMetrics.PREPARE);
+        try {
+            return cache.getPreparedImage(image);
+        }
+        finally {
+            StageMetrics.stop(probe);
+        }
+    }
+
+    /**
+     * Generates the ascii art with the color of each cell, and outputs it.
+     * The colors are computed in the same pass as the brightness, and only on this path,
+     * so monochrome renders do not pay for them.
+     * @param output the output to write the colored art to.
+     * @return the ascii art, without its colors.
+     * @throws TooSmallSetException if the character set is too small.
+     */
+    public char[][] runColored(ColorAsciiOutput output) throws TooSmallSetException{
+        if (characterMatcher.size() < 2){
+            throw new TooSmallSetException();
+        }
+        PrepareImage prepared = getPreparedImage();
+        StageMetrics.Probe probe = StageMetrics.start(metrics, StageMetrics.BRIGHTNESS);
+        ColoredCells cells = prepared.getColoredCells(resolution);
+        long[][][] masks = shapeMatching ?
+                prepared.getCellMasks(resolution, GlyphMask.SIDE, SHAPE_MIN_CONTRAST) : null;
+        StageMetrics.stop(probe);
+        double[][] brightness = dither(cells.brightness(), false);
+        probe = StageMetrics.start(metrics, StageMetrics.MATCH);
+        char[][] asciiArt = match(brightness, masks);
+        StageMetrics.stop(probe);
+        probe = StageMetrics.start(metrics, StageMetrics.OUTPUT);
+        output.out(asciiArt, cells.colors());
+        StageMetrics.stop(probe);
+        return asciiArt;
+    }
+
+    /**
+     * Generates the ascii art of an image read in strips, outputting each row as soon as it is made,
+     * so the image never has to be held in memory.
+     * @param image the image to be converted to ascii art.
+     * @param resolution the resolution of the ascii art.
+     * @param characterMatcher the character matcher to be used.
+     * @param subsampling reads only every subsampling-th pixel in each direction, 1 reads them all.
+     * @param output the output the rows are written to.
+     * @return the number of rows of the art.
+     * @throws TooSmallSetException if the character set is too small.
+     * @throws IOException if the image could not be read.
+     */
+    static int runStreaming(StreamingImage image, int resolution, CharMatcherSnapshot characterMatcher,
+                            int subsampling, StreamingAsciiOutput output)
+            throws TooSmallSetException, IOException {
+        if (characterMatcher.size() < 2){
+            throw new TooSmallSetException();
+        }
+        int[] rows = {0};
+        char[] row = new char[resolution];
+        output.begin(resolution);
+        image.forEachBrightnessRow(resolution, subsampling, brightness -> {
+            for (int j = 0; j < brightness.length; j++) {
+                row[j] = characterMatcher.getCharByImageBrightness(brightness[j]);
+            }
+            output.outRow(row);
+            rows[0]++;
+        });
+        output.end();
+        return rows[0];
+    }
+
+    /**
+     * Matches every cell to a char, by shape where the cell has a mask and by brightness otherwise.
+     * @param brightness the brightness matrix of the image.
+     * @param masks the masks of the cells, or null to match every cell by brightness.
+     * @return char[][] defining the art.
+     */
+    private char[][] match(double[][] brightness, long[][][] masks){
         char[][] asciiArt = new char[brightness.length][brightness[0].length];
         for (int i = 0; i < brightness.length; i++) {
             for (int j = 0; j < brightness[0].length; j++) {
-                asciiArt[i][j] = characterMatcher.getCharByImageBrightness(brightness[i][j]);
+                long[] mask = masks == null ? null : masks[i][j];
+                asciiArt[i][j] = mask != null ? characterMatcher.getCharByShape(mask) :
+                        characterMatcher.getCharByImageBrightness(brightness[i][j]);
             }
         }
         return asciiArt;
     }
 
+    /**
+     * Dithers a brightness matrix to the brightness levels of the chars, if dithering.
+     * @param brightness the brightness matrix.
+     * @param shared whether the matrix is shared, such as one from the cache, so a copy is dithered.
+     * @return the dithered matrix, or the matrix itself when not dithering.
+     */
+    private double[][] dither(double[][] brightness, boolean shared){
+        if (dithering == null){
+            return brightness;
+        }
+        return dither(brightness, shared, characterMatcher::quantize, characterMatcher.levels());
+    }
+
+    /**
+     * Dithers a brightness matrix to the given levels.
+     * @param brightness the brightness matrix.
+     * @param shared whether the matrix is shared, so a copy is dithered.
+     * @param quantizer returns the level a brightness is matched to.
+     * @param levels the number of levels.
+     * @return the dithered matrix.
+     */
+    private double[][] dither(double[][] brightness, boolean shared, DoubleUnaryOperator quantizer, int levels){
+        StageMetrics.Probe probe = StageMetrics.start(metrics, StageMetrics.DITHER);
+        double[][] dithered = brightness;
+        if (shared){
+            dithered = new double[brightness.length][];
+            for (int i = 0; i < brightness.length; i++) {
+                dithered[i] = brightness[i].clone();
+            }
+        }
+        dithering.dither(dithered, quantizer, levels);
+        StageMetrics.stop(probe);
+        return dithered;
+    }
+
     /**
      * Returns the brightness matrix of the image.
-     * Avoids recalculating the brightness matrix if the image has not changed.
+     * Avoids recalculating the brightness matrix if it is in the cache.
      * @return the brightness matrix of the image.
      */
     private double[][] getBrightnessMatrix(){
-        if (imgSnap == null || resolution != imgSnap.resolution()){
-            imgSnap = new ImageSnapshot(resolution,image.getImageBrightness(resolution));
+        return getBrightnessMatrix(resolution);
+    }
+
+    /**
+     * Returns the brightness matrix of the image at the given resolution.
+     * @param resolution the number of cells along the width.
+     * @return the brightness matrix of the image.
+     */
+    private double[][] getBrightnessMatrix(int resolution){
+        if (cache == null){
+            return preparedImage.getImageBrightness(resolution);
         }
-        return imgSnap.brightness();
+        return cache.getBrightness(image, resolution);
     }
 
     /**
@@ -85,10 +366,4 @@ class AsciiArtAlgorithm {
             super("Charset is too small.");
         }
     }
-
-    /**
-     * Private record to store the image, resolution, and brightness matrix.
-     * Used to avoid recalculating the brightness matrix if the image and resolution have not changed.
-     */
-    private record ImageSnapshot(int resolution, double[][] brightness) {}
 }
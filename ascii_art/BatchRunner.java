@@ -0,0 +1,509 @@
+package ascii_art;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+import ascii_art.AsciiArtAlgorithm.TooSmallSetException;
+import ascii_output.AnsiColorAsciiOutput;
+import ascii_output.AsciiOutput;
+import ascii_output.ColorAsciiOutput;
+import ascii_output.ConsoleAsciiOutput;
+import ascii_output.HtmlAsciiOutput;
+import ascii_output.HtmlColorAsciiOutput;
+import ascii_output.StreamingAsciiOutput;
+import image.Dithering;
+import image.Image;
+import image.PrepareImage;
+import image.StreamingImage;
+import image_char_matching.CharMatcherSnapshot;
+import image_char_matching.DotGlyphs;
+import image_char_matching.SubImgCharMatcher;
+
+
+/**
+ * The BatchRunner class converts many images to ascii art without the interactive shell.
+ * The images are converted over a bounded pool of workers, all sharing one character matcher.
+ * The art goes to standard output or to html files, the timing to standard error.
+ * The html file of an image matched by a glob keeps the path of the image below the directory
+ * of the glob, so images of the same name in different directories do not overwrite each other.
+ * Usage: java ascii_art.BatchRunner [options] &lt;image file or glob&gt;...
+ */
+public class BatchRunner {
+    /**
+     * Constants for the batch runner.
+     */
+    private static final String RES_OPTION = "--res";
+    private static final String CHARS_OPTION = "--chars";
+    private static final String ROUND_OPTION = "--round";
+    private static final String OUTPUT_OPTION = "--output";
+    private static final String OUT_DIR_OPTION = "--out-dir";
+    private static final String THREADS_OPTION = "--threads";
+    private static final String STREAM_OPTION = "--stream";
+    private static final String SUBSAMPLE_OPTION = "--subsample";
+    private static final String MIN_PADDING_OPTION = "--min-padding";
+    private static final String GZIP_OPTION = "--gzip";
+    private static final String RLE_OPTION = "--rle";
+    private static final String STATS_OPTION = "--stats";
+    private static final String MATCH_OPTION = "--match";
+    private static final String DOTS_OPTION = "--dots";
+    private static final String DITHER_OPTION = "--dither";
+    private static final String SPACING_OPTION = "--spacing";
+    private static final String SHAPE = "shape";
+    private static final String BRIGHTNESS = "brightness";
+    private static final String GZIP_SUFFIX = ".gz";
+    private static final String HTML = "html";
+    private static final String CONSOLE = "console";
+    private static final String HTML_COLOR = "html-color";
+    private static final String CONSOLE_COLOR = "console-color";
+    private static final String HTML_SUFFIX = ".html";
+    private static final String HTML_FONT = "Courier New";
+    private static final String GLOB_CHARS = "*?[{";
+    private static final int DEFAULT_RESOLUTION = 2;
+    private static final char[] DEFAULT_CHAR_LIST = {'0', '1', '2', '3', '4', '5', '6', '7', '8', '9'};
+    private static final double NANOS_IN_MILLI = 1e6;
+    private static final double NANOS_IN_SECOND = 1e9;
+    private static final double BYTES_IN_MEGABYTE = 1024 * 1024;
+    private static final String SPACE = " ";
+    private static final String USAGE =
+            "Usage: java ascii_art.BatchRunner [--res N] [--chars SPEC] [--round up|down|abs]\n" +
+            "       [--output console|html|console-color|html-color] [--out-dir DIR] [--threads N] [--stream]\n" +
+            "       [--subsample N] [--min-padding] [--gzip] [--rle] [--stats FILE] [--match brightness|shape]\n" +
+            "       [--dots braille|quadrant] [--dither none|floyd-steinberg|atkinson|bayer] [--spacing N]\n" +
+            "       <image file or glob>...";
+
+    /**
+     * The settings of the batch.
+     */
+    private final List<Path> images = new ArrayList<>();
+    /**
+     * The path of the html file of each image, relative to the output directory, without its suffix
+     */
+    private final Map<Path, Path> outputNames = new HashMap<>();
+    private int resolution = DEFAULT_RESOLUTION;
+    private char[] chars = DEFAULT_CHAR_LIST;
+    private String round = SubImgCharMatcher.ROUND_ABS;
+    private String output = CONSOLE;
+    private Path outDir = Paths.get(".");
+    private int threads = Runtime.getRuntime().availableProcessors();
+    private boolean stream = false;
+    private int subsampling = 1;
+    private boolean powerOfTwoPadding = true;
+    private boolean gzip = false;
+    private boolean runLength = false;
+    private String match = BRIGHTNESS;
+    /**
+     * The glyphs the art is drawn with instead of matching chars, or null.
+     */
+    private DotGlyphs dotGlyphs = null;
+    /**
+     * The dithering of the brightness before it is matched, or null. Shared by the workers,
+     * with the threads left over when there are fewer images than threads.
+     */
+    private Dithering dithering = null;
+    /**
+     * The spaces after every char of the console output, or null for one space, none with dots.
+     */
+    private String spacing = null;
+    /**
+     * The file the stage metrics of the batch are written to, or null.
+     */
+    private Path statsFile = null;
+    private final StageMetrics metrics = StageMetrics.forRendering();
+
+    /**
+     * The result of converting a single image.
+     * @param path the image file.
+     * @param rows the number of rows of the art, or 0 if the conversion failed.
+     * @param columns the number of columns of the art.
+     * @param nanos the time the conversion took.
+     * @param error the reason the conversion failed, or null.
+     */
+    private record Result(Path path, int rows, int columns, long nanos, String error) {}
+
+    /**
+     * Parses the command line.
+     * @param args the command line arguments.
+     * @throws IllegalArgumentException if the arguments are not formatted correctly.
+     * @throws IOException if a glob could not be expanded.
+     */
+    private BatchRunner(String[] args) throws IllegalArgumentException, IOException {
+        String ditherMethod = Dithering.NONE;
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            if (!arg.startsWith("--")) {
+                addImages(arg);
+                continue;
+            }
+            if (arg.equals(STREAM_OPTION)) {
+                stream = true;
+                continue;
+            }
+            if (arg.equals(MIN_PADDING_OPTION)) {
+                powerOfTwoPadding = false;
+                continue;
+            }
+            if (arg.equals(GZIP_OPTION)) {
+                gzip = true;
+                continue;
+            }
+            if (arg.equals(RLE_OPTION)) {
+                runLength = true;
+                continue;
+            }
+            if (i + 1 == args.length) {
+                throw new IllegalArgumentException("missing value for " + arg);
+            }
+            String value = args[++i];
+            switch (arg) {
+                case RES_OPTION -> resolution = Integer.parseInt(value);
+                case CHARS_OPTION -> chars = Shell.makeCharArray(value);
+                case ROUND_OPTION -> round = value;
+                case OUTPUT_OPTION -> output = value;
+                case OUT_DIR_OPTION -> outDir = Paths.get(value);
+                case THREADS_OPTION -> threads = Integer.parseInt(value);
+                case SUBSAMPLE_OPTION -> subsampling = Integer.parseInt(value);
+                case STATS_OPTION -> statsFile = Paths.get(value);
+                case MATCH_OPTION -> match = value;
+                case DOTS_OPTION -> dotGlyphs = DotGlyphs.forName(value);
+                case DITHER_OPTION -> ditherMethod = value;
+                case SPACING_OPTION -> spacing = SPACE.repeat(Integer.parseInt(value));
+                default -> throw new IllegalArgumentException("unknown option " + arg);
+            }
+        }
+        if (images.isEmpty() || resolution < 1 || threads < 1 ||
+                !(round.equals(SubImgCharMatcher.ROUND_UP) || round.equals(SubImgCharMatcher.ROUND_DOWN) ||
+                        round.equals(SubImgCharMatcher.ROUND_ABS)) ||
+                !(output.equals(CONSOLE) || output.equals(HTML) ||
+                        output.equals(CONSOLE_COLOR) || output.equals(HTML_COLOR)) ||
+                !(match.equals(BRIGHTNESS) || match.equals(SHAPE)) ||
+                stream && (output.equals(CONSOLE_COLOR) || output.equals(HTML_COLOR) || match.equals(SHAPE)) ||
+                dotGlyphs != null && (stream || output.equals(CONSOLE_COLOR) || output.equals(HTML_COLOR) ||
+                        match.equals(SHAPE)) ||
+                stream && !ditherMethod.equals(Dithering.NONE)) {
+            throw new IllegalArgumentException("incorrect format.");
+        }
+        if (output.equals(HTML) || output.equals(HTML_COLOR)) {
+            checkOutputNames();
+        }
+        if (!ditherMethod.equals(Dithering.NONE)) {
+            dithering = new Dithering(ditherMethod, Math.max(1, threads / images.size()));
+        }
+    }
+
+    /**
+     * Adds an image file, or all the files matching a glob pattern.
+     * @param pattern the file or glob pattern.
+     * @throws IOException if the directory of the glob could not be listed.
+     */
+    private void addImages(String pattern) throws IOException {
+        int firstGlob = 0;
+        while (firstGlob < pattern.length() && GLOB_CHARS.indexOf(pattern.charAt(firstGlob)) < 0) {
+            firstGlob++;
+        }
+        if (firstGlob == pattern.length()) {
+            Path path = Paths.get(pattern);
+            images.add(path);
+            outputNames.put(path, path.getFileName());
+            return;
+        }
+        int lastSeparator = pattern.lastIndexOf(File.separatorChar, firstGlob);
+        Path base = Paths.get(lastSeparator < 0 ? "." : pattern.substring(0, lastSeparator + 1));
+        String fullPattern = lastSeparator < 0 ? base.resolve(pattern).toString() : pattern;
+        PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + fullPattern);
+        try (Stream<Path> paths = Files.walk(base)) {
+            paths.filter(Files::isRegularFile).filter(matcher::matches).sorted().forEach(path -> {
+                images.add(path);
+                outputNames.put(path, base.relativize(path));
+            });
+        }
+    }
+
+    /**
+     * Checks that no two images are written to the same html file.
+     * @throws IllegalArgumentException if two images have the same output name.
+     */
+    private void checkOutputNames() throws IllegalArgumentException {
+        Set<Path> names = new HashSet<>();
+        for (Path image : images) {
+            if (!names.add(outputNames.get(image))) {
+                throw new IllegalArgumentException("more than one image would be written to " +
+                        outDir.resolve(outputNames.get(image)) + HTML_SUFFIX);
+            }
+        }
+    }
+
+    /**
+     * Returns the html file of an image in the output directory, creating its directory.
+     * @param path the image file.
+     * @return the name of the html file.
+     * @throws IOException if the directory could not be created.
+     */
+    private String outputFile(Path path) throws IOException {
+        Path file = outDir.resolve(outputNames.get(path) + HTML_SUFFIX + (gzip ? GZIP_SUFFIX : ""));
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        return file.toString();
+    }
+
+    /**
+     * Creates the character matcher shared by all the workers, an immutable snapshot.
+     * @return the character matcher.
+     * @throws IllegalArgumentException if the chars are not in the ASCII range.
+     */
+    private CharMatcherSnapshot sharedMatcher() throws IllegalArgumentException {
+        SubImgCharMatcher matcher = new SubImgCharMatcher(chars);
+        matcher.setTypeOfRound(round);
+        return matcher.snapshot();
+    }
+
+    /**
+     * Creates the html output of an image, named after it in the output directory.
+     * @param path the image file.
+     * @return the output.
+     * @throws IOException if the directory of the output could not be created.
+     */
+    private HtmlAsciiOutput htmlOutput(Path path) throws IOException {
+        return new HtmlAsciiOutput(outputFile(path), HTML_FONT, gzip, runLength, dotGlyphs != null);
+    }
+
+    /**
+     * Converts a single image and outputs the art.
+     * @param path the image file.
+     * @param matcher the shared character matcher.
+     * @return the result of the conversion.
+     */
+    private Result convert(Path path, CharMatcherSnapshot matcher) {
+        long start = System.nanoTime();
+        try {
+            if (stream) {
+                return convertStreaming(path, matcher, start);
+            }
+            StageMetrics.Probe probe = metrics.start(StageMetrics.DECODE);
+            Image decoded;
+            try {
+                decoded = new Image(path.toString());
+            }
+            finally {
+                probe.stop();
+            }
+            probe = metrics.start(StageMetrics.PREPARE);
+            PrepareImage image;
+            try {
+                image = new PrepareImage(decoded, 1, powerOfTwoPadding);
+            }
+            finally {
+                probe.stop();
+            }
+            AsciiArtAlgorithm algorithm = new AsciiArtAlgorithm(image, resolution, matcher);
+            algorithm.setMetrics(metrics);
+            algorithm.setShapeMatching(match.equals(SHAPE));
+            algorithm.setDotGlyphs(dotGlyphs);
+            algorithm.setDithering(dithering);
+            if (output.equals(HTML_COLOR) || output.equals(CONSOLE_COLOR)) {
+                return convertColored(path, algorithm, start);
+            }
+            char[][] art = algorithm.run();
+            if (output.equals(HTML)) {
+                AsciiOutput outputMethod = htmlOutput(path);
+                probe = metrics.start(StageMetrics.OUTPUT);
+                try {
+                    outputMethod.out(art);
+                }
+                finally {
+                    probe.stop();
+                }
+            } else {
+                ConsoleAsciiOutput outputMethod = new ConsoleAsciiOutput(consoleSpacing());
+                synchronized (System.out) {
+                    System.out.println(path);
+                    probe = metrics.start(StageMetrics.OUTPUT);
+                    try {
+                        outputMethod.out(art);
+                    }
+                    finally {
+                        probe.stop();
+                    }
+                }
+                recordConsoleWrite(outputMethod);
+            }
+            return new Result(path, art.length, art[0].length, System.nanoTime() - start, null);
+        }
+        catch (IOException | TooSmallSetException | RuntimeException e) {
+            return new Result(path, 0, 0, System.nanoTime() - start, e.toString());
+        }
+    }
+
+    /**
+     * @return the spaces after every char of the console output.
+     */
+    private String consoleSpacing() {
+        return spacing != null ? spacing : dotGlyphs != null ? "" : SPACE;
+    }
+
+    /**
+     * Records the bytes a console output wrote, for the console throughput of the batch.
+     * @param outputMethod the console output of a single image.
+     */
+    private void recordConsoleWrite(ConsoleAsciiOutput outputMethod) {
+        metrics.addConsoleWrite(outputMethod.getBytesWritten(), outputMethod.getWriteNanos());
+    }
+
+    /**
+     * Outputs the art of a single image with the color of each cell.
+     * @param path the image file.
+     * @param algorithm the algorithm set up for the image.
+     * @param start the time the conversion started.
+     * @return the result of the conversion.
+     * @throws IOException if the directory of the html output could not be created.
+     * @throws TooSmallSetException if the character set is too small.
+     */
+    private Result convertColored(Path path, AsciiArtAlgorithm algorithm, long start)
+            throws IOException, TooSmallSetException {
+        char[][] art;
+        if (output.equals(HTML_COLOR)) {
+            art = algorithm.runColored(new HtmlColorAsciiOutput(outputFile(path), HTML_FONT, gzip,
+                    ColorAsciiOutput.DEFAULT_COLOR_BITS));
+        } else {
+            AnsiColorAsciiOutput outputMethod = new AnsiColorAsciiOutput();
+            synchronized (System.out) {
+                System.out.println(path);
+                art = algorithm.runColored(outputMethod);
+            }
+            recordConsoleWrite(outputMethod);
+        }
+        return new Result(path, art.length, art[0].length, System.nanoTime() - start, null);
+    }
+
+    /**
+     * Converts a single image read in strips, outputting the art a row at a time.
+     * @param path the image file.
+     * @param matcher the shared character matcher.
+     * @param start the time the conversion started.
+     * @return the result of the conversion.
+     * @throws IOException if the image could not be read.
+     * @throws TooSmallSetException if the character set is too small.
+     */
+    private Result convertStreaming(Path path, CharMatcherSnapshot matcher, long start)
+            throws IOException, TooSmallSetException {
+        int rows;
+        try (StreamingImage image = new StreamingImage(path.toString(),
+                StreamingImage.DEFAULT_STRIP_ROWS, powerOfTwoPadding)) {
+            if (output.equals(HTML)) {
+                StreamingAsciiOutput outputMethod = htmlOutput(path);
+                rows = AsciiArtAlgorithm.runStreaming(image, resolution, matcher, subsampling, outputMethod);
+            } else {
+                ConsoleAsciiOutput outputMethod = new ConsoleAsciiOutput(consoleSpacing());
+                synchronized (System.out) {
+                    System.out.println(path);
+                    rows = AsciiArtAlgorithm.runStreaming(image, resolution, matcher, subsampling, outputMethod);
+                }
+                recordConsoleWrite(outputMethod);
+            }
+        }
+        return new Result(path, rows, resolution, System.nanoTime() - start, null);
+    }
+
+    /**
+     * Converts all the images over the worker pool, and reports the timing of each image and in total.
+     * @throws InterruptedException if interrupted while waiting for the workers.
+     */
+    private void run() throws InterruptedException {
+        long start = System.nanoTime();
+        CharMatcherSnapshot matcher = sharedMatcher();
+        ExecutorService workers = Executors.newFixedThreadPool(Math.min(threads, images.size()));
+        List<Future<Result>> futures = new ArrayList<>();
+        for (Path path : images) {
+            futures.add(workers.submit(() -> convert(path, matcher)));
+        }
+        workers.shutdown();
+
+        int failures = 0;
+        long pixels = 0;
+        for (Future<Result> future : futures) {
+            Result result;
+            try {
+                result = future.get();
+            }
+            catch (ExecutionException e) {
+                throw new IllegalStateException(e.getCause());
+            }
+            if (result.error() != null) {
+                failures++;
+                System.err.printf("%s: failed in %.1f ms, %s%n",
+                        result.path(), result.nanos() / NANOS_IN_MILLI, result.error());
+            } else {
+                pixels += (long) result.rows() * result.columns();
+                System.err.printf("%s: %dx%d chars in %.1f ms%n", result.path(),
+                        result.columns(), result.rows(), result.nanos() / NANOS_IN_MILLI);
+            }
+        }
+        double seconds = (System.nanoTime() - start) / NANOS_IN_SECOND;
+        System.err.printf("%d images (%d failed) in %.2f s on %d threads: %.1f images/s, %.0f chars/s%s%n",
+                images.size(), failures, seconds, threads, images.size() / seconds, pixels / seconds,
+                metrics.getConsoleBytes() == 0 ? "" : String.format(Locale.ROOT, ", console %.1f MB/s",
+                        metrics.getConsoleBytesPerSecond() / BYTES_IN_MEGABYTE));
+        if (statsFile != null) {
+            writeStats(seconds);
+        }
+    }
+
+    /**
+     * Writes the time, CPU time and allocation of each stage over the batch, and the console
+     * throughput, as JSON.
+     * Images read in strips interleave their stages, so they are not counted.
+     * @param seconds the time the whole batch took.
+     */
+    private void writeStats(double seconds) {
+        String json = String.format(Locale.ROOT, "{\"images\":%d,\"threads\":%d,\"seconds\":%.3f,\"stages\":%s," +
+                        "\"console_bytes\":%d,\"console_bytes_per_s\":%.0f}%n",
+                images.size(), threads, seconds, metrics.toJson(), metrics.getConsoleBytes(),
+                metrics.getConsoleBytesPerSecond());
+        try {
+            Files.writeString(statsFile, json);
+        }
+        catch (IOException e) {
+            System.err.println("Could not write stats. " + e.getMessage());
+        }
+    }
+
+    /**
+     * Main method for the batch runner.
+     * @param args the options and the image files or globs.
+     */
+    public static void main(String[] args) {
+        BatchRunner runner;
+        try {
+            runner = new BatchRunner(args);
+        }
+        catch (IllegalArgumentException | IOException e) {
+            System.out.println("Did not run batch due to " + e.getMessage());
+            System.out.println(USAGE);
+            return;
+        }
+        try {
+            runner.run();
+        }
+        catch (IllegalArgumentException e) {
+            System.out.println("Did not run batch due to " + e.getMessage());
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
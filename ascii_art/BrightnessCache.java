@@ -0,0 +1,84 @@
+package ascii_art;
+
+import image.Image;
+import image.PrepareImage;
+
+
+/**
+ * The BrightnessCache class keeps the work of preparing images and computing their brightness
+ * matrices, so renders of the same image, at any resolution, do not repeat it.
+ * Images are keyed by identity. Both the prepared images and the brightness matrices are
+ * evicted least recently used first. The brightness matrices are kept with an index of
+ * quantized brightness buckets, built once a matrix is rendered again, so a change of the
+ * charset or the rounding method only matches the buckets present. Safe to share between
+ * concurrent renders.
+ */
+public class BrightnessCache {
+
+    /**
+     * The key of a brightness matrix.
+     */
+    private record BrightnessKey(Image image, int resolution) {}
+
+    private final LruCache<Image, PrepareImage> preparedImages;
+    private final LruCache<BrightnessKey, BrightnessIndex> brightnessMatrices;
+
+    /**
+     * Constructor for the BrightnessCache class.
+     * @param maxImages the number of prepared images to keep.
+     * @param maxCells the total number of brightness cells to keep, over all the matrices.
+     */
+    public BrightnessCache(int maxImages, long maxCells) {
+        this.preparedImages = new LruCache<>(maxImages, prepared -> 1);
+        this.brightnessMatrices = new LruCache<>(maxCells, index -> {
+            double[][] brightness = index.getBrightness();
+            return (long) brightness.length * (brightness.length == 0 ? 0 : brightness[0].length);
+        });
+    }
+
+    /**
+     * Returns the image prepared for the ascii art algorithm, preparing it if it is not cached.
+     * @param image the image.
+     * @return the prepared image.
+     */
+    public PrepareImage getPreparedImage(Image image) {
+        return preparedImages.get(image, PrepareImage::new);
+    }
+
+    /**
+     * Returns the brightness matrix of an image at a resolution, computing it if it is not cached.
+     * The matrix is shared, it must not be changed.
+     * @param image the image.
+     * @param resolution the resolution.
+     * @return the brightness matrix, an array of rows.
+     */
+    public double[][] getBrightness(Image image, int resolution) {
+        return getBrightnessIndex(image, resolution).getBrightness();
+    }
+
+    /**
+     * Returns the brightness matrix of an image at a resolution with its index of brightness
+     * buckets, computing the matrix if it is not cached.
+     * @param image the image.
+     * @param resolution the resolution.
+     * @return the indexed brightness matrix.
+     */
+    BrightnessIndex getBrightnessIndex(Image image, int resolution) {
+        return brightnessMatrices.get(new BrightnessKey(image, resolution),
+                key -> new BrightnessIndex(getPreparedImage(image).getImageBrightness(resolution)));
+    }
+
+    /**
+     * @return the number of lookups, of prepared images and brightness matrices, found in the cache.
+     */
+    public long getHits() {
+        return preparedImages.getHits() + brightnessMatrices.getHits();
+    }
+
+    /**
+     * @return the number of lookups, of prepared images and brightness matrices, not found in the cache.
+     */
+    public long getMisses() {
+        return preparedImages.getMisses() + brightnessMatrices.getMisses();
+    }
+}
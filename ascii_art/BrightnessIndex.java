@@ -0,0 +1,123 @@
+package ascii_art;
+
+import image_char_matching.CharMatcherSnapshot;
+
+/**
+ * A brightness matrix kept with a grid of quantized brightness buckets, and a histogram of the
+ * buckets the cells fall in. Mapping the art to chars after a change of the charset or the
+ * rounding method only matches the buckets present, and fills the cells by table lookup.
+ * Rounding a brightness to a char is monotonic, so a bucket whose lowest and highest values
+ * match the same char holds only cells of that char. The cells of the few buckets that straddle
+ * a rounding boundary are matched one by one, so the art is the same as matching every cell.
+ * The first mapping matches every cell, the buckets are only built once the matrix is mapped
+ * again, so a matrix rendered once costs no more than it did without the index.
+ */
+class BrightnessIndex {
+    /**
+     * The number of equal buckets [0,1] is split into
+     */
+    private static final int BUCKETS = 1024;
+    /**
+     * Marks a bucket whose cells do not all match the same char
+     */
+    private static final char UNRESOLVED = 0;
+
+    /**
+     * The bucket of each cell, the lowest and highest brightness in each bucket, and the
+     * number of cells in each bucket.
+     */
+    private record Buckets(short[][] grid, double[] low, double[] high, int[] counts) {}
+
+    private final double[][] brightness;
+    /**
+     * Whether the matrix was mapped before, so a further mapping builds the buckets
+     */
+    private volatile boolean mapped;
+    /**
+     * The buckets, null until the second mapping. A thread that races another to them
+     * builds the same buckets.
+     */
+    private volatile Buckets buckets;
+
+    /**
+     * Keeps a brightness matrix to index.
+     * @param brightness the brightness matrix, an array of rows. It is kept, not copied.
+     */
+    BrightnessIndex(double[][] brightness) {
+        this.brightness = brightness;
+    }
+
+    /**
+     * @return the brightness matrix, shared, it must not be changed.
+     */
+    double[][] getBrightness() {
+        return brightness;
+    }
+
+    /**
+     * Maps every cell to a char, matching each bucket of brightness present once.
+     * @param matcher the character matcher.
+     * @return the ascii art.
+     */
+    char[][] map(CharMatcherSnapshot matcher) {
+        char[][] chars = new char[brightness.length][brightness.length == 0 ? 0 : brightness[0].length];
+        if (!mapped) {
+            mapped = true;
+            for (int y = 0; y < brightness.length; y++) {
+                for (int x = 0; x < chars[y].length; x++) {
+                    chars[y][x] = matcher.getCharByImageBrightness(brightness[y][x]);
+                }
+            }
+            return chars;
+        }
+        Buckets indexed = getBuckets();
+        char[] table = new char[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            if (indexed.counts()[i] > 0) {
+                char low = matcher.getCharByImageBrightness(indexed.low()[i]);
+                table[i] = low == matcher.getCharByImageBrightness(indexed.high()[i]) ? low : UNRESOLVED;
+            }
+        }
+        for (int y = 0; y < chars.length; y++) {
+            short[] cells = indexed.grid()[y];
+            char[] row = chars[y];
+            for (int x = 0; x < row.length; x++) {
+                char c = table[cells[x]];
+                row[x] = c != UNRESOLVED ? c : matcher.getCharByImageBrightness(brightness[y][x]);
+            }
+        }
+        return chars;
+    }
+
+    /**
+     * Builds the buckets on first use.
+     */
+    private Buckets getBuckets() {
+        Buckets indexed = buckets;
+        if (indexed != null) {
+            return indexed;
+        }
+        int columns = brightness.length == 0 ? 0 : brightness[0].length;
+        short[][] grid = new short[brightness.length][columns];
+        double[] low = new double[BUCKETS];
+        double[] high = new double[BUCKETS];
+        int[] counts = new int[BUCKETS];
+        for (int y = 0; y < brightness.length; y++) {
+            for (int x = 0; x < columns; x++) {
+                double value = brightness[y][x];
+                int bucket = Math.max(0, Math.min(BUCKETS - 1, (int) (value * BUCKETS)));
+                grid[y][x] = (short) bucket;
+                if (counts[bucket]++ == 0) {
+                    low[bucket] = value;
+                    high[bucket] = value;
+                } else {
+                    low[bucket] = Math.min(low[bucket], value);
+                    high[bucket] = Math.max(high[bucket], value);
+                }
+            }
+        }
+        indexed = new Buckets(grid, low, high, counts);
+        buckets = indexed;
+        return indexed;
+    }
+}
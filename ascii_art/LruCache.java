@@ -0,0 +1,134 @@
+package ascii_art;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+
+/**
+ * A least-recently-used cache bounded by the total weight of its values, safe for concurrent use.
+ * A value is loaded outside the lock, once: threads asking for a key that is still loading
+ * wait for it instead of loading it again.
+ * @param <K> the type of the keys.
+ * @param <V> the type of the values.
+ */
+class LruCache<K, V> {
+
+    /**
+     * A cached value, and its weight once it is loaded.
+     */
+    private static class Entry<V> {
+        private final CompletableFuture<V> value = new CompletableFuture<>();
+        private long weight = 0;
+    }
+
+    private final long maxWeight;
+    private final ToLongFunction<V> weigher;
+    private final LinkedHashMap<K, Entry<V>> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long totalWeight = 0;
+    private long hits = 0;
+    private long misses = 0;
+
+    /**
+     * Constructor for the LruCache class.
+     * @param maxWeight the total weight above which the least recently used values are evicted.
+     * @param weigher gives the weight of a value.
+     */
+    LruCache(long maxWeight, ToLongFunction<V> weigher) {
+        this.maxWeight = maxWeight;
+        this.weigher = weigher;
+    }
+
+    /**
+     * Returns the value of a key, loading it if it is not cached.
+     * The most recently loaded value is kept even if it alone weighs more than the maximum.
+     * @param key the key.
+     * @param loader loads the value of a key.
+     * @return the value.
+     */
+    V get(K key, Function<K, V> loader) {
+        Entry<V> entry;
+        boolean load = false;
+        synchronized (this) {
+            entry = entries.get(key);
+            if (entry != null) {
+                hits++;
+            } else {
+                misses++;
+                entry = new Entry<>();
+                entries.put(key, entry);
+                load = true;
+            }
+        }
+        if (load) {
+            V value;
+            try {
+                value = loader.apply(key);
+            }
+            catch (Throwable e) {
+                // Errors too, such as running out of memory, or the waiters would wait forever
+                synchronized (this) {
+                    entries.remove(key, entry);
+                }
+                entry.value.completeExceptionally(e);
+                throw e;
+            }
+            entry.value.complete(value);
+            synchronized (this) {
+                if (entries.get(key) == entry) {
+                    entry.weight = weigher.applyAsLong(value);
+                    totalWeight += entry.weight;
+                    evict(entry);
+                }
+            }
+            return value;
+        }
+        try {
+            return entry.value.join();
+        }
+        catch (CompletionException e) {
+            if (e.getCause() instanceof Error error) {
+                throw error;
+            }
+            throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+        }
+    }
+
+    /**
+     * Evicts the least recently used values until the total weight is within the maximum.
+     * @param keep the entry that must not be evicted.
+     */
+    private void evict(Entry<V> keep) {
+        Iterator<Entry<V>> eldest = entries.values().iterator();
+        while (totalWeight > maxWeight && eldest.hasNext()) {
+            Entry<V> entry = eldest.next();
+            if (entry != keep) {
+                eldest.remove();
+                totalWeight -= entry.weight;
+            }
+        }
+    }
+
+    /**
+     * @return the number of lookups that found their key cached, including ones still loading.
+     */
+    synchronized long getHits() {
+        return hits;
+    }
+
+    /**
+     * @return the number of lookups that had to load their value.
+     */
+    synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * @return the number of cached values.
+     */
+    synchronized int size() {
+        return entries.size();
+    }
+}
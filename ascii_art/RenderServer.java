@@ -0,0 +1,457 @@
+package ascii_art;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import ascii_art.AsciiArtAlgorithm.TooSmallSetException;
+import ascii_output.ConsoleAsciiOutput;
+import ascii_output.HtmlAsciiOutput;
+import ascii_output.StreamingAsciiOutput;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import image.Image;
+import image.PrepareImage;
+import image_char_matching.CharMatcherSnapshot;
+import image_char_matching.SubImgCharMatcher;
+
+
+/**
+ * The RenderServer class serves ascii art over HTTP.
+ * POST /render with the image file as the body, and the settings as query parameters:
+ * res, chars (as the shell's add command), round (up, down or abs) and output (text or html).
+ * The art is streamed back as it is written. GET /metrics returns the time, CPU time
+ * and allocation of each stage.
+ * A fixed number of workers renders at most a bounded number of queued requests, any request
+ * beyond those is rejected at once with 429, so overload never builds an unbounded backlog.
+ * A rejected upload is not read, its connection is closed after the reply. A body larger than
+ * the maximum body size is refused with 413.
+ * Immutable character matcher snapshots are pooled by charset and rounding method, and shared
+ * by the requests without locks. The glyph brightness cache is shared by the whole process.
+ * Usage: java ascii_art.RenderServer [--port N] [--workers N] [--queue N] [--max-body BYTES]
+ */
+public class RenderServer {
+    /**
+     * Constants for the render server.
+     */
+    private static final String PORT_OPTION = "--port";
+    private static final String WORKERS_OPTION = "--workers";
+    private static final String QUEUE_OPTION = "--queue";
+    private static final String MAX_BODY_OPTION = "--max-body";
+    private static final String RENDER_PATH = "/render";
+    private static final String METRICS_PATH = "/metrics";
+    private static final String POST = "POST";
+    private static final String GET = "GET";
+    private static final String TEXT = "text";
+    private static final String HTML = "html";
+    private static final String HTML_FONT = "Courier New";
+    private static final String DEFAULT_CHARS = "0-9";
+    private static final int DEFAULT_PORT = 8080;
+    private static final int DEFAULT_QUEUE = 64;
+    private static final int DEFAULT_RESOLUTION = 64;
+    private static final int DEFAULT_MAX_BODY = 64 * 1024 * 1024;
+    private static final int CACHED_MATCHERS = 32;
+    private static final int ADMISSION_THREADS = 2;
+    private static final int OK = 200;
+    private static final int BAD_REQUEST = 400;
+    private static final int METHOD_NOT_ALLOWED = 405;
+    private static final int PAYLOAD_TOO_LARGE = 413;
+    private static final int TOO_MANY_REQUESTS = 429;
+    private static final int SERVER_ERROR = 500;
+    private static final long CHUNKED = 0;
+    private static final long NO_BODY = -1;
+    private static final String TOTAL = "total";
+    private static final String USAGE =
+            "Usage: java ascii_art.RenderServer [--port N] [--workers N] [--queue N] [--max-body BYTES]";
+
+    /**
+     * The key of a pooled character matcher.
+     */
+    private record MatcherKey(String chars, String round) {}
+
+    /**
+     * Thrown when a request body is larger than the maximum body size.
+     */
+    private static class BodyTooLargeException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        BodyTooLargeException(long maxBodySize) {
+            super("The image is larger than " + maxBodySize + " bytes.");
+        }
+    }
+
+    /**
+     * A request body that fails once more than the maximum body size was read from it, for
+     * bodies sent without a length, or with a false one.
+     */
+    private static class LimitedInputStream extends FilterInputStream {
+        private final long maxBodySize;
+        private long remaining;
+        private boolean exceeded;
+
+        LimitedInputStream(InputStream in, long maxBodySize) {
+            super(in);
+            this.maxBodySize = maxBodySize;
+            this.remaining = maxBodySize;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                count(1);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int read = super.read(b, off, len);
+            if (read > 0) {
+                count(read);
+            }
+            return read;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            count(skipped);
+            return skipped;
+        }
+
+        private void count(long bytes) throws BodyTooLargeException {
+            remaining -= bytes;
+            if (remaining < 0) {
+                exceeded = true;
+                throw new BodyTooLargeException(maxBodySize);
+            }
+        }
+
+        /**
+         * @return whether more than the maximum body size was read, even if a decoder wrapped the failure.
+         */
+        boolean isExceeded() {
+            return exceeded;
+        }
+    }
+
+    private final HttpServer server;
+    private final ThreadPoolExecutor workers;
+    private final ExecutorService admission;
+    private final Semaphore admitted;
+    private final LruCache<MatcherKey, CharMatcherSnapshot> matchers =
+            new LruCache<>(CACHED_MATCHERS, matcher -> 1);
+    private final StageMetrics metrics = new StageMetrics(StageMetrics.DECODE,
+            StageMetrics.PREPARE, StageMetrics.BRIGHTNESS, StageMetrics.MATCH, StageMetrics.OUTPUT, TOTAL);
+    private final LongAdder rejected = new LongAdder();
+    private final long maxBodySize;
+
+    /**
+     * Creates the server, not yet started, accepting images of up to the default maximum body size.
+     * @param port the port to listen on, 0 for any free port.
+     * @param workerCount the number of requests rendered at once.
+     * @param queueCapacity the number of requests waiting for a worker, beyond which requests are rejected.
+     * @throws IOException if the port could not be bound.
+     * @throws IllegalArgumentException if the worker count or queue capacity are not valid.
+     */
+    public RenderServer(int port, int workerCount, int queueCapacity) throws IOException, IllegalArgumentException {
+        this(port, workerCount, queueCapacity, DEFAULT_MAX_BODY);
+    }
+
+    /**
+     * Creates the server, not yet started.
+     * @param port the port to listen on, 0 for any free port.
+     * @param workerCount the number of requests rendered at once.
+     * @param queueCapacity the number of requests waiting for a worker, beyond which requests are rejected.
+     * @param maxBodySize the largest image accepted, in bytes.
+     * @throws IOException if the port could not be bound.
+     * @throws IllegalArgumentException if the worker count, queue capacity or maximum body size are not valid.
+     */
+    public RenderServer(int port, int workerCount, int queueCapacity, long maxBodySize)
+            throws IOException, IllegalArgumentException {
+        if (workerCount < 1 || queueCapacity < 0 || maxBodySize < 1) {
+            throw new IllegalArgumentException("incorrect format.");
+        }
+        this.maxBodySize = maxBodySize;
+        // The queue itself is unbounded, the admission permits bound it: a worker releases its
+        // permit just before it is free to take the next request, so a bounded queue could overflow.
+        this.workers = new ThreadPoolExecutor(workerCount, workerCount, 0, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>());
+        this.admitted = new Semaphore(workerCount + queueCapacity);
+        this.server = HttpServer.create(new InetSocketAddress(port), 0);
+        // Admission, and rejection, run on their own threads, rendering on the workers.
+        this.admission = Executors.newFixedThreadPool(ADMISSION_THREADS);
+        server.setExecutor(admission);
+        server.createContext(RENDER_PATH, this::admit);
+        server.createContext(METRICS_PATH, this::sendMetrics);
+    }
+
+    /**
+     * Starts serving.
+     */
+    public void start() {
+        server.start();
+    }
+
+    /**
+     * Stops serving, letting the requests being rendered finish.
+     */
+    public void stop() {
+        server.stop(0);
+        admission.shutdown();
+        workers.shutdown();
+    }
+
+    /**
+     * @return the port the server listens on.
+     */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Hands a render request to the workers, or rejects it with 429 if they are all busy
+     * and the queue is full, or with 413 if its declared length is over the maximum body size.
+     * The body of a rejected request is not read, the connection is closed after the reply instead,
+     * so a large upload never holds an admission thread.
+     */
+    private void admit(HttpExchange exchange) throws IOException {
+        if (!exchange.getRequestMethod().equals(POST)) {
+            sendError(exchange, METHOD_NOT_ALLOWED, "POST an image to render it.");
+            return;
+        }
+        String length = exchange.getRequestHeaders().getFirst("Content-Length");
+        if (length != null && isOverMaxBody(length)) {
+            reject(exchange, PAYLOAD_TOO_LARGE, new BodyTooLargeException(maxBodySize).getMessage());
+            return;
+        }
+        if (!admitted.tryAcquire()) {
+            rejected.increment();
+            exchange.getResponseHeaders().set("Retry-After", "1");
+            reject(exchange, TOO_MANY_REQUESTS, "Too many requests.");
+            return;
+        }
+        workers.execute(() -> {
+            try {
+                render(exchange);
+            }
+            finally {
+                admitted.release();
+            }
+        });
+    }
+
+    /**
+     * @return whether a Content-Length header is over the maximum body size. A malformed one is
+     * left to the server, which refuses it.
+     */
+    private boolean isOverMaxBody(String length) {
+        try {
+            return Long.parseLong(length.trim()) > maxBodySize;
+        }
+        catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Rejects a request without reading its body, closing the connection after the reply.
+     */
+    private static void reject(HttpExchange exchange, int status, String message) {
+        exchange.getResponseHeaders().set("Connection", "close");
+        sendError(exchange, status, message);
+    }
+
+    /**
+     * Renders the image of a request, and streams the art back.
+     */
+    private void render(HttpExchange exchange) {
+        StageMetrics.Probe total = metrics.start(TOTAL);
+        LimitedInputStream body = new LimitedInputStream(exchange.getRequestBody(), maxBodySize);
+        try (body) {
+            Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+            int resolution = Integer.parseInt(query.getOrDefault("res", DEFAULT_RESOLUTION + ""));
+            String output = query.getOrDefault("output", TEXT);
+            if (!output.equals(TEXT) && !output.equals(HTML)) {
+                throw new IllegalArgumentException("incorrect format.");
+            }
+            CharMatcherSnapshot matcher = getMatcher(query.getOrDefault("chars", DEFAULT_CHARS),
+                    query.getOrDefault("round", SubImgCharMatcher.ROUND_ABS));
+
+            StageMetrics.Probe probe = metrics.start(StageMetrics.DECODE);
+            Image image;
+            try {
+                image = new Image(body);
+            }
+            finally {
+                probe.stop();
+            }
+            probe = metrics.start(StageMetrics.PREPARE);
+            PrepareImage prepared;
+            try {
+                prepared = new PrepareImage(image);
+            }
+            finally {
+                probe.stop();
+            }
+            AsciiArtAlgorithm algorithm = new AsciiArtAlgorithm(prepared, resolution, matcher);
+            algorithm.setMetrics(metrics);
+            char[][] art = algorithm.run();
+
+            probe = metrics.start(StageMetrics.OUTPUT);
+            try {
+                exchange.getResponseHeaders().set("Content-Type",
+                        (output.equals(HTML) ? "text/html" : "text/plain") + "; charset=utf-8");
+                exchange.sendResponseHeaders(OK, CHUNKED);
+                OutputStream responseBody = exchange.getResponseBody();
+                StreamingAsciiOutput outputMethod = output.equals(HTML) ?
+                        new HtmlAsciiOutput(Channels.newChannel(responseBody), HTML_FONT, false) :
+                        new ConsoleAsciiOutput(" ", new PrintStream(responseBody, false, StandardCharsets.UTF_8));
+                outputMethod.out(art);
+            }
+            finally {
+                probe.stop();
+            }
+            total.stop();
+        }
+        catch (IOException | TooSmallSetException | IllegalArgumentException e) {
+            if (body.isExceeded()) {
+                reject(exchange, PAYLOAD_TOO_LARGE, new BodyTooLargeException(maxBodySize).getMessage());
+            }
+            else {
+                sendError(exchange, BAD_REQUEST, e.getMessage());
+            }
+        }
+        catch (RuntimeException e) {
+            sendError(exchange, SERVER_ERROR, e.toString());
+        }
+        finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * Returns a character matcher snapshot from the pool, shared by all requests with the same
+     * charset and rounding method.
+     * @throws IllegalArgumentException if the chars or rounding method are not valid.
+     */
+    private CharMatcherSnapshot getMatcher(String chars, String round) throws IllegalArgumentException {
+        if (!round.equals(SubImgCharMatcher.ROUND_UP) && !round.equals(SubImgCharMatcher.ROUND_DOWN) &&
+                !round.equals(SubImgCharMatcher.ROUND_ABS)) {
+            throw new IllegalArgumentException("incorrect format.");
+        }
+        char[] charArray = Shell.makeCharArray(chars);
+        return matchers.get(new MatcherKey(chars, round), key -> {
+            SubImgCharMatcher matcher = new SubImgCharMatcher(charArray);
+            matcher.setTypeOfRound(round);
+            return matcher.snapshot();
+        });
+    }
+
+    /**
+     * Sends the latency of each stage, and the number of rejected requests, as JSON.
+     */
+    private void sendMetrics(HttpExchange exchange) throws IOException {
+        if (!exchange.getRequestMethod().equals(GET)) {
+            sendError(exchange, METHOD_NOT_ALLOWED, "GET the metrics.");
+            return;
+        }
+        byte[] json = String.format("{\"stages\":%s,\"rejected\":%d,\"queued\":%d,\"active\":%d}%n",
+                metrics.toJson(), rejected.sum(), workers.getQueue().size(), workers.getActiveCount())
+                .getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(OK, json.length);
+        try (OutputStream body = exchange.getResponseBody()) {
+            body.write(json);
+        }
+    }
+
+    /**
+     * Sends an error status with a plain text message, unless the response was already started.
+     */
+    private static void sendError(HttpExchange exchange, int status, String message) {
+        byte[] bytes = ((message == null ? "" : message) + "\n").getBytes(StandardCharsets.UTF_8);
+        try {
+            if (exchange.getResponseCode() == NO_BODY) {
+                exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+                exchange.sendResponseHeaders(status, bytes.length);
+                exchange.getResponseBody().write(bytes);
+            }
+        }
+        catch (IOException ignored) {
+            // The client is gone, there is no one to report to.
+        }
+        finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * Parses a raw query string into its decoded parameters.
+     */
+    private static Map<String, String> parseQuery(String rawQuery) {
+        Map<String, String> query = new HashMap<>();
+        if (rawQuery == null) {
+            return query;
+        }
+        for (String parameter : rawQuery.split("&")) {
+            int equals = parameter.indexOf('=');
+            if (equals > 0) {
+                query.put(URLDecoder.decode(parameter.substring(0, equals), StandardCharsets.UTF_8),
+                        URLDecoder.decode(parameter.substring(equals + 1), StandardCharsets.UTF_8));
+            }
+        }
+        return query;
+    }
+
+    /**
+     * Main method for the render server.
+     * @param args the options.
+     */
+    public static void main(String[] args) {
+        int port = DEFAULT_PORT;
+        int workerCount = Runtime.getRuntime().availableProcessors();
+        int queueCapacity = DEFAULT_QUEUE;
+        int maxBodySize = DEFAULT_MAX_BODY;
+        RenderServer renderServer;
+        try {
+            for (int i = 0; i < args.length; i++) {
+                if (i + 1 == args.length) {
+                    throw new IllegalArgumentException("missing value for " + args[i]);
+                }
+                int value = Integer.parseInt(args[++i]);
+                switch (args[i - 1]) {
+                    case PORT_OPTION -> port = value;
+                    case WORKERS_OPTION -> workerCount = value;
+                    case QUEUE_OPTION -> queueCapacity = value;
+                    case MAX_BODY_OPTION -> maxBodySize = value;
+                    default -> throw new IllegalArgumentException("unknown option " + args[i - 1]);
+                }
+            }
+            renderServer = new RenderServer(port, workerCount, queueCapacity, maxBodySize);
+        }
+        catch (IllegalArgumentException | IOException e) {
+            System.out.println("Did not start server due to " + e.getMessage());
+            System.out.println(USAGE);
+            return;
+        }
+        renderServer.start();
+        System.out.println("Serving on port " + renderServer.getPort());
+    }
+}
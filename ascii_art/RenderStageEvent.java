@@ -0,0 +1,31 @@
+package ascii_art;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * A flight recorder event for a run of a stage of the render pipeline.
+ * Disabled unless a recording enables it, when it costs a single check per stage.
+ */
+@Name("ascii_art.RenderStage")
+@Label("Render Stage")
+@Category("Ascii Art")
+@Description("A stage of rendering an image as ascii art")
+@StackTrace(false)
+class RenderStageEvent extends jdk.jfr.Event {
+    @Label("Stage")
+    String stage;
+
+    @Label("CPU Time")
+    @Timespan(Timespan.NANOSECONDS)
+    long cpuTime;
+
+    @Label("Allocated")
+    @DataAmount(DataAmount.BYTES)
+    long allocated;
+}
@@ -3,10 +3,17 @@ package ascii_art;
 import java.io.IOException;
 
 import ascii_art.AsciiArtAlgorithm.TooSmallSetException;
+import ascii_output.AnsiColorAsciiOutput;
 import ascii_output.AsciiOutput;
+import ascii_output.ColorAsciiOutput;
 import ascii_output.ConsoleAsciiOutput;
+import ascii_output.DeltaConsoleAsciiOutput;
 import ascii_output.HtmlAsciiOutput;
+import ascii_output.HtmlColorAsciiOutput;
+import image.Dithering;
 import image.Image;
+import image_char_matching.DotGlyphs;
+import image_char_matching.GlyphBrightnessCache;
 import image_char_matching.SubImgCharMatcher;
 
 
@@ -20,6 +27,9 @@ public class Shell{
      */
     private static final String HTML = "html";
     private static final String CONSOLE = "console";
+    private static final String HTML_COLOR = "html-color";
+    private static final String CONSOLE_COLOR = "console-color";
+    private static final String CONSOLE_LIVE = "console-live";
     private static final String RUN = "asciiArt";
     private static final String UP = "up";
     private static final String DOWN = "down";
@@ -31,6 +41,15 @@ public class Shell{
     private static final String ROUND = "round";
     private static final String ABS = "abs";
     private static final String OUTPUT = "output";
+    private static final String STATS = "stats";
+    private static final String MATCH = "match";
+    private static final String SHAPE = "shape";
+    private static final String BRIGHTNESS = "brightness";
+    private static final String DOTS = "dots";
+    private static final String DITHER = "dither";
+    private static final String OFF = "off";
+    private static final String DEFAULT_SPACING = " ";
+    private static final String NO_COLOR_DOTS = "dots having no color.";
     private static final String INCORRECT_FORMAT = "incorrect format.";
     private static final String ALL_CHARS = "all";
     private static final String SPACE_KEY = "space";
@@ -39,6 +58,12 @@ public class Shell{
     private static final String HTML_FONT = "Courier New";
     private static final String CHG_RUND_MTD = "change rounding method";
     private static final String CHG_OPUT_MTD = "change output method";
+    private static final String CHG_MTCH_MTD = "change matching method";
+    private static final String CHG_DOTS = "change dots";
+    private static final String CHG_DTHR = "change dithering";
+    private static final String WARM_CACHE = "--warm-cache";
+    private static final int CACHED_IMAGES = 1;
+    private static final long CACHED_BRIGHTNESS_CELLS = 1 << 24;
     private static final char[] DEFAULT_CHAR_LIST = {'0', '1', '2', '3', '4', '5', '6', '7', '8', '9'};
 
 
@@ -48,7 +73,13 @@ public class Shell{
     private Image image;
     private int resolution;
     private AsciiOutput outputMethod;
+    private String outputName;
+    private boolean shapeMatching;
+    private DotGlyphs dotGlyphs;
+    private Dithering dithering;
     private final SubImgCharMatcher charMatcher;
+    private final BrightnessCache brightnessCache;
+    private final StageMetrics metrics = StageMetrics.forRendering();
 
     /**
      * Constructor for the Shell class.
@@ -58,7 +89,9 @@ public class Shell{
         this.charMatcher = new SubImgCharMatcher(DEFAULT_CHAR_LIST);
         this.resolution = 2;
         this.outputMethod = new ConsoleAsciiOutput();
+        this.outputName = CONSOLE;
         this.image = null;
+        this.brightnessCache = new BrightnessCache(CACHED_IMAGES, CACHED_BRIGHTNESS_CELLS);
     }
 
     /**
@@ -104,7 +137,7 @@ public class Shell{
      * @return the char array.
      * @throws IllegalArgumentException if the string is not formatted correctly.
      */
-    private char[] makeCharArray(String charString) throws
+    static char[] makeCharArray(String charString) throws
                                     IllegalArgumentException {
         if (charString.equals(ALL_CHARS)){
             char[] charList = new char[SubImgCharMatcher.UPPER_ASCII-SubImgCharMatcher.LOWER_ASCII+1];
@@ -192,28 +225,126 @@ public class Shell{
     /**
      * Parses the output method command.
      * @param commandString the command string given by the user.
-     * @throws IllegalArgumentException if the command is not formatted correctly.
+     * @throws IllegalArgumentException if the command is not formatted correctly,
+     * or the output is colored while drawing with dots.
      */
     private void parseOutputMethod(String commandString) throws
                                         IllegalArgumentException {
-        if (commandString.equals(CONSOLE)){
-            outputMethod = new ConsoleAsciiOutput();
+        outputMethod = makeOutput(commandString, dotGlyphs != null);
+        outputName = commandString;
+    }
+
+    /**
+     * Makes an output method.
+     * @param name the name of the output method.
+     * @param dense whether the art is drawn with dots, so its chars are output edge to edge.
+     * @return the output method.
+     * @throws IllegalArgumentException if there is no such output method,
+     * or it is colored and the art is drawn with dots.
+     */
+    private static AsciiOutput makeOutput(String name, boolean dense) throws
+                                        IllegalArgumentException {
+        String spacing = dense ? "" : DEFAULT_SPACING;
+        if (name.equals(CONSOLE)){
+            return new ConsoleAsciiOutput(spacing);
         }
-        else if (commandString.equals(HTML)){
-            outputMethod = new HtmlAsciiOutput(HTML_OUTPUT_FILE,HTML_FONT);
+        else if (name.equals(HTML)){
+            return new HtmlAsciiOutput(HTML_OUTPUT_FILE,HTML_FONT,false,false,dense);
         }
-        else{
+        else if (name.equals(CONSOLE_LIVE)){
+            return new DeltaConsoleAsciiOutput(spacing);
+        }
+        else if (!name.equals(CONSOLE_COLOR) && !name.equals(HTML_COLOR)){
             throw new IllegalArgumentException(INCORRECT_FORMAT);
         }
+        else if (dense){
+            throw new IllegalArgumentException(NO_COLOR_DOTS);
+        }
+        else if (name.equals(CONSOLE_COLOR)){
+            return new AnsiColorAsciiOutput();
+        }
+        else{
+            return new HtmlColorAsciiOutput(HTML_OUTPUT_FILE,HTML_FONT);
+        }
+    }
+
+    /**
+     * Parses the dots command.
+     * @param commandString the command string given by the user.
+     * @throws IllegalArgumentException if the command is not formatted correctly,
+     * or the output is colored.
+     */
+    private void parseDots(String commandString) throws
+                                        IllegalArgumentException {
+        DotGlyphs glyphs = switch (commandString) {
+            case DotGlyphs.BRAILLE_NAME, DotGlyphs.QUADRANT_NAME -> DotGlyphs.forName(commandString);
+            case OFF -> null;
+            default -> throw new IllegalArgumentException(INCORRECT_FORMAT);
+        };
+        outputMethod = makeOutput(outputName, glyphs != null);
+        dotGlyphs = glyphs;
+    }
+
+    /**
+     * Parses the matching method command.
+     * @param commandString the command string given by the user.
+     * @throws IllegalArgumentException if the command is not formatted correctly.
+     */
+    private void parseMatchingMethod(String commandString) throws
+                                        IllegalArgumentException {
+        switch (commandString) {
+            case SHAPE -> shapeMatching = true;
+            case BRIGHTNESS -> shapeMatching = false;
+            default -> throw new IllegalArgumentException(INCORRECT_FORMAT);
+        }
+    }
+
+    /**
+     * Parses the dithering command.
+     * @param commandString the command string given by the user.
+     * @throws IllegalArgumentException if the command is not formatted correctly.
+     */
+    private void parseDithering(String commandString) throws
+                                        IllegalArgumentException {
+        switch (commandString) {
+            case Dithering.NONE -> dithering = null;
+            case Dithering.FLOYD_STEINBERG, Dithering.ATKINSON, Dithering.BAYER ->
+                    dithering = new Dithering(commandString, Runtime.getRuntime().availableProcessors());
+            default -> throw new IllegalArgumentException(INCORRECT_FORMAT);
+        }
     }
 
     /**
      * Generates the ascii art.
      * @throws TooSmallSetException if the character set is too small.
+     * @throws IllegalArgumentException if drawing with dots, and twice the resolution is out of bounds.
      */
-    private void generateArt() throws TooSmallSetException {
-        AsciiArtAlgorithm asciiArt = new AsciiArtAlgorithm(image,resolution, charMatcher);
-        outputMethod.out(asciiArt.run());
+    private void generateArt() throws TooSmallSetException, IllegalArgumentException {
+        AsciiArtAlgorithm asciiArt = new AsciiArtAlgorithm(image,resolution, charMatcher.snapshot(),
+                brightnessCache);
+        asciiArt.setMetrics(metrics);
+        asciiArt.setShapeMatching(shapeMatching);
+        asciiArt.setDotGlyphs(dotGlyphs);
+        asciiArt.setDithering(dithering);
+        ConsoleAsciiOutput console = outputMethod instanceof ConsoleAsciiOutput consoleOutput ? consoleOutput : null;
+        long bytes = console == null ? 0 : console.getBytesWritten();
+        long nanos = console == null ? 0 : console.getWriteNanos();
+        if (outputMethod instanceof ColorAsciiOutput colorOutput){
+            asciiArt.runColored(colorOutput);
+        }
+        else {
+            char[][] art = asciiArt.run();
+            StageMetrics.Probe probe = metrics.start(StageMetrics.OUTPUT);
+            try {
+                outputMethod.out(art);
+            }
+            finally {
+                probe.stop();
+            }
+        }
+        if (console != null){
+            metrics.addConsoleWrite(console.getBytesWritten() - bytes, console.getWriteNanos() - nanos);
+        }
     }
 
     /**
@@ -224,11 +355,15 @@ public class Shell{
      * @param imageName the name of the image file.
      */
     public void run(String imageName){
+        StageMetrics.Probe probe = metrics.start(StageMetrics.DECODE);
         try { this.image = new Image(imageName); }
         catch (IOException e) {
             System.out.println(e.getMessage()+ " " + imageName);
             return;
         }
+        finally {
+            probe.stop();
+        }
         
         String[] commands = readInput();
         while (!(commands[0].equals(EXIT))){
@@ -288,23 +423,76 @@ public class Shell{
                     System.out.println(errWriter(CHG_OPUT_MTD, e.getMessage()));
                 }
             }
+            case MATCH -> {
+                try {
+                    if (commands.length < 2) {
+                        throw new IllegalArgumentException(INCORRECT_FORMAT);
+                    }
+                    parseMatchingMethod(commands[1]);
+                }
+                catch (IllegalArgumentException e) {
+                    System.out.println(errWriter(CHG_MTCH_MTD, e.getMessage()));
+                }
+            }
+            case DOTS -> {
+                try {
+                    if (commands.length < 2) {
+                        throw new IllegalArgumentException(INCORRECT_FORMAT);
+                    }
+                    parseDots(commands[1]);
+                }
+                catch (IllegalArgumentException e) {
+                    System.out.println(errWriter(CHG_DOTS, e.getMessage()));
+                }
+            }
+            case DITHER -> {
+                try {
+                    if (commands.length < 2) {
+                        throw new IllegalArgumentException(INCORRECT_FORMAT);
+                    }
+                    parseDithering(commands[1]);
+                }
+                catch (IllegalArgumentException e) {
+                    System.out.println(errWriter(CHG_DTHR, e.getMessage()));
+                }
+            }
             case RUN -> {
                 try { generateArt(); }
-                catch (TooSmallSetException e) {
+                catch (TooSmallSetException | IllegalArgumentException e) {
                     System.out.println("Did not execute. " + e.getMessage());
                 }
             }
+            case STATS -> System.out.print(metrics.toTable());
             default -> System.out.println(errWriter("execute", "incorrect command."));
         }
     }
 
+    /**
+     * Writes the glyph brightness table, so later runs load it instead of rendering the chars.
+     * @param fileName the file to write the table to.
+     */
+    private static void warmCache(String fileName) {
+        try {
+            GlyphBrightnessCache.warm(fileName);
+            System.out.println("Glyph cache written to " + fileName + ".");
+        }
+        catch (IOException e) {
+            System.out.println("Could not write glyph cache. " + e.getMessage());
+        }
+    }
+
     /**
      * Main method for the shell.
-     * @param args the path to the image file.
+     * @param args the path to the image file, or --warm-cache and optionally the table file.
      */
     public static void main(String[] args) {
+        if (args.length >= 1 && args.length <= 2 && args[0].equals(WARM_CACHE)){
+            warmCache(args.length == 2 ? args[1] : GlyphBrightnessCache.DEFAULT_CACHE_FILE);
+            return;
+        }
         if (args.length != 1){
             System.out.println("Usage: java Shell <image file>");
+            System.out.println("       java Shell " + WARM_CACHE + " [cache file]");
             return;
         }
         Shell shell;
@@ -0,0 +1,213 @@
+package ascii_art;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Metrics of the stages of a pipeline: how many times each stage ran, its total and longest
+ * wall time, and its total CPU time and allocated bytes, measured on the thread running the
+ * stage through the ThreadMXBean. Work a stage hands to other threads is counted in its wall
+ * time only. Every run is also a RenderStageEvent, for flight recordings.
+ * The bytes console outputs write, and the time spent writing them, are kept too, for the
+ * throughput of the console.
+ * Safe to update from concurrent renders.
+ */
+class StageMetrics {
+    /**
+     * The stages of rendering an image.
+     */
+    static final String DECODE = "decode";
+    static final String PREPARE = "prepare";
+    static final String BRIGHTNESS = "brightness";
+    static final String DITHER = "dither";
+    static final String MATCH = "match";
+    static final String OUTPUT = "output";
+
+    private static final double NANOS_IN_MILLI = 1e6;
+    private static final double BYTES_IN_KILOBYTE = 1024;
+    private static final double BYTES_IN_MEGABYTE = 1024 * 1024;
+    private static final double NANOS_IN_SECOND = 1e9;
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+    private static final com.sun.management.ThreadMXBean ALLOCATIONS =
+            THREADS instanceof com.sun.management.ThreadMXBean allocations &&
+                    allocations.isThreadAllocatedMemorySupported() ? allocations : null;
+    private static final boolean CPU_TIME = THREADS.isCurrentThreadCpuTimeSupported();
+
+    /**
+     * The metrics of a single stage.
+     */
+    private static final class Stage {
+        private final LongAdder count = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+        private final LongAdder cpuNanos = new LongAdder();
+        private final LongAdder allocatedBytes = new LongAdder();
+    }
+
+    /**
+     * A run of a stage in progress, on the thread that started it.
+     */
+    final class Probe {
+        private final Stage stage;
+        private final RenderStageEvent event = new RenderStageEvent();
+        private final long startNanos;
+        private final long startCpu;
+        private final long startAllocated;
+
+        private Probe(String name, Stage stage) {
+            this.stage = stage;
+            event.stage = name;
+            event.begin();
+            this.startCpu = CPU_TIME ? THREADS.getCurrentThreadCpuTime() : 0;
+            this.startAllocated = ALLOCATIONS != null ? ALLOCATIONS.getCurrentThreadAllocatedBytes() : 0;
+            this.startNanos = System.nanoTime();
+        }
+
+        /**
+         * Ends the run and records it.
+         */
+        void stop() {
+            long nanos = System.nanoTime() - startNanos;
+            long cpu = CPU_TIME ? THREADS.getCurrentThreadCpuTime() - startCpu : 0;
+            long allocated = ALLOCATIONS != null ? ALLOCATIONS.getCurrentThreadAllocatedBytes() - startAllocated : 0;
+            stage.count.increment();
+            stage.totalNanos.add(nanos);
+            stage.maxNanos.accumulate(nanos);
+            stage.cpuNanos.add(cpu);
+            stage.allocatedBytes.add(allocated);
+            if (event.shouldCommit()) {
+                event.cpuTime = cpu;
+                event.allocated = allocated;
+                event.commit();
+            }
+        }
+    }
+
+    private final Map<String, Stage> stages = new HashMap<>();
+    private final String[] order;
+    private final LongAdder consoleBytes = new LongAdder();
+    private final LongAdder consoleNanos = new LongAdder();
+
+    /**
+     * @param order the names of the stages, in the order they are reported.
+     */
+    StageMetrics(String... order) {
+        this.order = order.clone();
+        for (String name : order) {
+            stages.put(name, new Stage());
+        }
+    }
+
+    /**
+     * @return metrics of the stages of rendering an image.
+     */
+    static StageMetrics forRendering() {
+        return new StageMetrics(DECODE, PREPARE, BRIGHTNESS, DITHER, MATCH, OUTPUT);
+    }
+
+    /**
+     * Starts a run of a stage on the calling thread, to be stopped on the same thread.
+     * @param name the name of the stage, one of those given to the constructor.
+     * @return the run in progress.
+     * @throws IllegalArgumentException if there is no such stage.
+     */
+    Probe start(String name) throws IllegalArgumentException {
+        Stage stage = stages.get(name);
+        if (stage == null) {
+            throw new IllegalArgumentException("unknown stage " + name);
+        }
+        return new Probe(name, stage);
+    }
+
+    /**
+     * Starts a run of a stage, if there are metrics to record it in.
+     * @param metrics the metrics, or null.
+     * @param name the name of the stage.
+     * @return the run in progress, or null.
+     */
+    static Probe start(StageMetrics metrics, String name) {
+        return metrics == null ? null : metrics.start(name);
+    }
+
+    /**
+     * Stops a run started by start(metrics, name).
+     * @param probe the run, or null.
+     */
+    static void stop(Probe probe) {
+        if (probe != null) {
+            probe.stop();
+        }
+    }
+
+    /**
+     * Records bytes written to the console.
+     * @param bytes the number of bytes written.
+     * @param nanos the time spent writing them.
+     */
+    void addConsoleWrite(long bytes, long nanos) {
+        consoleBytes.add(bytes);
+        consoleNanos.add(nanos);
+    }
+
+    /**
+     * @return the number of bytes written to the console so far.
+     */
+    long getConsoleBytes() {
+        return consoleBytes.sum();
+    }
+
+    /**
+     * @return the number of bytes written to the console per second spent writing, so far.
+     */
+    double getConsoleBytesPerSecond() {
+        long nanos = consoleNanos.sum();
+        return nanos == 0 ? 0 : consoleBytes.sum() * NANOS_IN_SECOND / nanos;
+    }
+
+    /**
+     * @return the metrics as a JSON object, with an object of the count, the mean and max wall
+     * milliseconds, the mean CPU milliseconds and the mean allocated bytes of every stage.
+     */
+    String toJson() {
+        StringBuilder json = new StringBuilder("{");
+        for (String name : order) {
+            Stage stage = stages.get(name);
+            long count = stage.count.sum();
+            long runs = Math.max(1, count);
+            json.append(json.length() > 1 ? "," : "").append(String.format(Locale.ROOT,
+                    "\"%s\":{\"count\":%d,\"mean_ms\":%.3f,\"max_ms\":%.3f,\"cpu_ms\":%.3f,\"alloc_bytes\":%d}",
+                    name, count, stage.totalNanos.sum() / NANOS_IN_MILLI / runs,
+                    stage.maxNanos.get() / NANOS_IN_MILLI, stage.cpuNanos.sum() / NANOS_IN_MILLI / runs,
+                    stage.allocatedBytes.sum() / runs));
+        }
+        return json.append("}").toString();
+    }
+
+    /**
+     * @return the metrics as a table, a line for every stage, and one for the console throughput
+     * if anything was written to the console.
+     */
+    String toTable() {
+        StringBuilder table = new StringBuilder(String.format(Locale.ROOT, "%-12s %7s %10s %10s %10s %12s%n",
+                "stage", "count", "mean ms", "max ms", "cpu ms", "alloc KB"));
+        for (String name : order) {
+            Stage stage = stages.get(name);
+            long count = stage.count.sum();
+            long runs = Math.max(1, count);
+            table.append(String.format(Locale.ROOT, "%-12s %7d %10.3f %10.3f %10.3f %12.1f%n",
+                    name, count, stage.totalNanos.sum() / NANOS_IN_MILLI / runs,
+                    stage.maxNanos.get() / NANOS_IN_MILLI, stage.cpuNanos.sum() / NANOS_IN_MILLI / runs,
+                    stage.allocatedBytes.sum() / BYTES_IN_KILOBYTE / runs));
+        }
+        if (getConsoleBytes() > 0) {
+            table.append(String.format(Locale.ROOT, "console      %d bytes written at %.1f MB/s%n",
+                    getConsoleBytes(), getConsoleBytesPerSecond() / BYTES_IN_MEGABYTE));
+        }
+        return table.toString();
+    }
+}
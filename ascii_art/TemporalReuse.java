@@ -0,0 +1,75 @@
+package ascii_art;
+
+import image_char_matching.CharMatcherSnapshot;
+
+/**
+ * Matches the cells of consecutive frames to chars, reusing the char of a cell from the
+ * previous frame while its brightness stays within a threshold of the brightness the char
+ * was matched for. Comparing to that brightness, not the previous frame's, keeps slow drifts
+ * from accumulating past the threshold.
+ */
+class TemporalReuse {
+    private final CharMatcherSnapshot matcher;
+    private final double threshold;
+    private double[][] reference;
+    private char[][] previous;
+    private long reused = 0;
+    private long matched = 0;
+
+    /**
+     * @param matcher the character matcher.
+     * @param threshold the largest change in brightness for which a cell keeps its char,
+     *                  0 reuses only cells whose brightness did not change.
+     */
+    TemporalReuse(CharMatcherSnapshot matcher, double threshold) {
+        if (threshold < 0) {
+            throw new IllegalArgumentException("threshold must not be negative.");
+        }
+        this.matcher = matcher;
+        this.threshold = threshold;
+    }
+
+    /**
+     * Matches the next frame.
+     * @param brightness the brightness of the cells of the frame.
+     * @return the chars of the frame, a new array each time.
+     */
+    char[][] match(double[][] brightness) {
+        boolean sameLayout = previous != null && previous.length == brightness.length &&
+                previous[0].length == brightness[0].length;
+        if (!sameLayout) {
+            reference = new double[brightness.length][brightness[0].length];
+            previous = null;
+        }
+        char[][] chars = new char[brightness.length][brightness[0].length];
+        for (int y = 0; y < brightness.length; y++) {
+            for (int x = 0; x < brightness[y].length; x++) {
+                double cell = brightness[y][x];
+                if (sameLayout && Math.abs(cell - reference[y][x]) <= threshold) {
+                    chars[y][x] = previous[y][x];
+                    reused++;
+                } else {
+                    chars[y][x] = matcher.getCharByImageBrightness(cell);
+                    reference[y][x] = cell;
+                    matched++;
+                }
+            }
+        }
+        previous = chars;
+        return chars;
+    }
+
+    /**
+     * @return the number of cells whose char was reused so far.
+     */
+    long getReused() {
+        return reused;
+    }
+
+    /**
+     * @return the number of cells matched so far.
+     */
+    long getMatched() {
+        return matched;
+    }
+}
@@ -0,0 +1,23 @@
+package ascii_output;
+
+/**
+ * An object implementing this interface can output a sequence of 2D arrays of chars
+ * as the frames of an animation, a frame at a time, as the frames are made.
+ */
+public interface AnimationOutput {
+    /**
+     * Start the output of frames of the specified number of columns, to be shown at the
+     * specified number of frames per second
+     */
+    void begin(int columns, double framesPerSecond);
+
+    /**
+     * Output the next frame
+     */
+    void frame(char[][] chars);
+
+    /**
+     * Finish the output, after the last frame
+     */
+    void end();
+}
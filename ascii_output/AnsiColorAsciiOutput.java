@@ -0,0 +1,51 @@
+package ascii_output;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Output a 2D array of chars to the console, each in its own color, using ANSI 24-bit color
+ * escapes. A color escape is written only where the quantized color changes along a row.
+ */
+public class AnsiColorAsciiOutput extends ConsoleAsciiOutput implements ColorAsciiOutput {
+    private static final byte[] RESET = "\u001b[0m".getBytes(StandardCharsets.US_ASCII);
+
+    private final int colorBits;
+
+    /**
+     * Output with a space after every char, keeping DEFAULT_COLOR_BITS of each channel.
+     */
+    public AnsiColorAsciiOutput() {
+        this(DEFAULT_COLOR_BITS);
+    }
+
+    /**
+     * Output with a space after every char.
+     * @param colorBits the number of bits kept of each color channel, in [1, 8].
+     */
+    public AnsiColorAsciiOutput(int colorBits) {
+        if (colorBits < 1 || colorBits > 8) {
+            throw new IllegalArgumentException("color bits out of bounds.");
+        }
+        this.colorBits = colorBits;
+    }
+
+    @Override
+    public void out(char[][] chars, int[][] colors) {
+        begin(chars[0].length);
+        for (int y = 0; y < chars.length; y++) {
+            int current = -1;
+            for (int x = 0; x < chars[y].length; x++) {
+                int color = ColorAsciiOutput.quantize(colors[y][x], colorBits) & 0xFFFFFF;
+                if (color != current) {
+                    append(("\u001b[38;2;" + (color >> 16) + ";" + ((color >> 8) & 0xFF) + ";" +
+                            (color & 0xFF) + "m").getBytes(StandardCharsets.US_ASCII));
+                    current = color;
+                }
+                appendCell(chars[y][x]);
+            }
+            append(RESET);
+            endRow();
+        }
+        end();
+    }
+}
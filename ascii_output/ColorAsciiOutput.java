@@ -0,0 +1,28 @@
+package ascii_output;
+
+/**
+ * An object implementing this interface can output a 2D array of chars
+ * together with a color for each char.
+ */
+public interface ColorAsciiOutput extends AsciiOutput {
+    /**
+     * The default number of bits kept of each color channel, cells whose colors
+     * agree on these bits share their color markup
+     */
+    int DEFAULT_COLOR_BITS = 4;
+
+    /**
+     * Output the specified 2D array of chars, each in the color at the same place
+     * in the 2D array of colors (in the default RGB color model)
+     */
+    void out(char[][] chars, int[][] colors);
+
+    /**
+     * Keep only the given number of high bits of each channel of a color, so close
+     * colors become equal and adjacent cells can share their color markup
+     */
+    static int quantize(int rgb, int bitsPerChannel) {
+        int channelMask = (0xFF << (8 - bitsPerChannel)) & 0xFF;
+        return rgb & (channelMask << 16 | channelMask << 8 | channelMask);
+    }
+}
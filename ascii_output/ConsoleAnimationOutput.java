@@ -0,0 +1,67 @@
+package ascii_output;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Play a sequence of 2D arrays of chars in the console, each frame drawn over the previous one.
+ * Every frame is written in a single write, after moving the cursor to the top left corner,
+ * and frames are paced to the requested rate.
+ */
+public class ConsoleAnimationOutput extends ConsoleAsciiOutput implements AnimationOutput {
+    private static final byte[] CLEAR_SCREEN = "\u001b[2J".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] CURSOR_HOME = "\u001b[H".getBytes(StandardCharsets.US_ASCII);
+    private static final double NANOS_IN_SECOND = 1e9;
+
+    private long frameNanos = 0;
+    private long nextFrame = 0;
+    private int rows = -1;
+    private int columns = -1;
+
+    @Override
+    public void begin(int columns, double framesPerSecond) {
+        frameNanos = framesPerSecond > 0 ? (long) (NANOS_IN_SECOND / framesPerSecond) : 0;
+        nextFrame = System.nanoTime();
+        rows = -1;
+        this.columns = columns;
+    }
+
+    @Override
+    public void frame(char[][] chars) {
+        super.begin(chars[0].length);
+        if (chars.length != rows || chars[0].length != columns) {
+            append(CLEAR_SCREEN);
+            rows = chars.length;
+            columns = chars[0].length;
+        }
+        append(CURSOR_HOME);
+        for (char[] row : chars) {
+            outRow(row);
+        }
+        pace();
+        super.end();
+    }
+
+    @Override
+    public void end() {
+        rows = -1;
+    }
+
+    /**
+     * Waits until the time of the next frame.
+     */
+    private void pace() {
+        if (frameNanos == 0) {
+            return;
+        }
+        long wait = nextFrame - System.nanoTime();
+        if (wait > 0) {
+            try {
+                TimeUnit.NANOSECONDS.sleep(wait);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        nextFrame = Math.max(nextFrame, System.nanoTime() - frameNanos) + frameNanos;
+    }
+}
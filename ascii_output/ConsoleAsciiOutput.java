@@ -1,16 +1,138 @@
 package ascii_output;
 
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
 /**
  * Output a 2D array of chars to the console.
+ * The chars are encoded as UTF-8 into a reusable buffer, which is written to the console in a
+ * single write per frame (or per FLUSH_BYTES, for very large frames). UTF-8 rather than the
+ * platform charset, so chars outside ASCII, such as braille patterns, are never lost.
  * @author Dan Nirel
- */public class ConsoleAsciiOutput implements AsciiOutput{
+ */public class ConsoleAsciiOutput implements StreamingAsciiOutput{
+    private static final String DEFAULT_SPACING = " ";
+    private static final int INITIAL_BUFFER = 1 << 12;
+    private static final int FLUSH_BYTES = 1 << 20;
+    private static final double NANOS_IN_SECOND = 1e9;
+
+    private final byte[] spacing;
+    private final byte[] lineSeparator;
+    /**
+     * The stream written to, or null for whatever System.out is at the time of writing.
+     */
+    private final PrintStream target;
+    private byte[] buffer = new byte[INITIAL_BUFFER];
+    private int length = 0;
+    private long bytesWritten = 0;
+    private long writeNanos = 0;
+
+    /**
+     * Output with a space after every char.
+     */
+    public ConsoleAsciiOutput() {
+        this(DEFAULT_SPACING);
+    }
+
+    /**
+     * Output with the given spacing after every char.
+     * @param spacing the string written after every char, may be empty.
+     */
+    public ConsoleAsciiOutput(String spacing) {
+        this(spacing, null);
+    }
+
+    /**
+     * Output with the given spacing after every char, to the given stream instead of the console.
+     * @param spacing the string written after every char, may be empty.
+     * @param target the stream written to, or null for the console.
+     */
+    public ConsoleAsciiOutput(String spacing, PrintStream target) {
+        this.spacing = spacing.getBytes(StandardCharsets.UTF_8);
+        this.lineSeparator = System.lineSeparator().getBytes(StandardCharsets.UTF_8);
+        this.target = target;
+    }
+
     @Override
-    public void out(char[][] chars) {
-        for (int y = 0; y < chars.length ; y++) {
-            for (int x = 0; x < chars[y].length; x++) {
-                System.out.print(chars[y][x] + " ");
-            }
-            System.out.println();
+    public void begin(int columns) {
+        length = 0;
+    }
+
+    @Override
+    public void outRow(char[] row) {
+        for (char c : row) {
+            appendCell(c);
         }
+        endRow();
+    }
+
+    @Override
+    public void end() {
+        flush();
+    }
+
+    /**
+     * @return the number of bytes written to the console so far.
+     */
+    public long getBytesWritten() {
+        return bytesWritten;
+    }
+
+    /**
+     * @return the nanoseconds spent writing to the console so far.
+     */
+    public long getWriteNanos() {
+        return writeNanos;
+    }
+
+    /**
+     * @return the number of bytes written to the console per second spent writing, so far.
+     */
+    public double getBytesPerSecond() {
+        return writeNanos == 0 ? 0 : bytesWritten * NANOS_IN_SECOND / writeNanos;
+    }
+
+    /**
+     * Appends a char, and the spacing after it, to the buffer.
+     */
+    void appendCell(char c) {
+        ensureCapacity(Utf8.MAX_BYTES);
+        length = Utf8.encode(c, buffer, length);
+        append(spacing);
+    }
+
+    /**
+     * Appends the line separator to the buffer, and writes the buffer if it is large.
+     */
+    void endRow() {
+        append(lineSeparator);
+        if (length >= FLUSH_BYTES) {
+            flush();
+        }
+    }
+
+    void append(byte[] bytes) {
+        ensureCapacity(bytes.length);
+        System.arraycopy(bytes, 0, buffer, length, bytes.length);
+        length += bytes.length;
+    }
+
+    private void ensureCapacity(int extra) {
+        if (length + extra > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, length + extra));
+        }
+    }
+
+    /**
+     * Writes the buffer to the console, or the target stream, in one write.
+     */
+    private void flush() {
+        long start = System.nanoTime();
+        PrintStream out = target == null ? System.out : target;
+        out.write(buffer, 0, length);
+        out.flush();
+        writeNanos += System.nanoTime() - start;
+        bytesWritten += length;
+        length = 0;
     }
 }
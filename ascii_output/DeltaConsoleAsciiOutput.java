@@ -0,0 +1,160 @@
+package ascii_output;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Output a 2D array of chars to the console, redrawing only what changed since the last output.
+ * The first output draws the whole art where the cursor is, and saves the cursor under it.
+ * Any output of a different size draws the whole art over the last one. Later outputs are
+ * compared to the last one, and only the runs of changed chars are rewritten, after moving the
+ * cursor to them with ANSI escapes, relative to the saved cursor, so the art may start on any
+ * row of the screen. Runs separated by fewer unchanged chars than a cursor move costs are
+ * rewritten as one run.
+ * A few lines under the art are reserved before the cursor is saved, so the stats line and the
+ * shell's prompt after it do not scroll the art away from the saved cursor.
+ * A stats line under the art reports the bytes written and the bytes saved over a full redraw.
+ */
+public class DeltaConsoleAsciiOutput extends ConsoleAsciiOutput {
+    private static final String ESCAPE = "\u001b[";
+    private static final byte[] CLEAR_BELOW = (ESCAPE + "J").getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] SAVE_CURSOR = "\u001b7".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] RESTORE_CURSOR = "\u001b8".getBytes(StandardCharsets.US_ASCII);
+    /**
+     * A cursor move is ESC [ rows B and ESC [ column G, counted as at most this many bytes.
+     */
+    private static final int CURSOR_MOVE_BYTES = 12;
+    /**
+     * The lines reserved under the art: the stats line, and the prompt and command of the shell.
+     */
+    private static final int RESERVED_LINES = 3;
+
+    private final int cellWidth;
+    private final int lineSeparatorBytes;
+    private char[][] last;
+    /**
+     * The number of rows of the art on the screen above the saved cursor, 0 if none was drawn
+     */
+    private int drawnRows = 0;
+    /**
+     * The row of the art the cursor is on while a frame is drawn, counted from 0
+     */
+    private int cursorRow;
+    private long fullBytes = 0;
+    private long deltaBytes = 0;
+
+    /**
+     * Output with a space after every char.
+     */
+    public DeltaConsoleAsciiOutput() {
+        this(" ");
+    }
+
+    /**
+     * Output with the given spacing after every char.
+     * @param spacing the string written after every char, may be empty.
+     */
+    public DeltaConsoleAsciiOutput(String spacing) {
+        super(spacing);
+        this.cellWidth = 1 + spacing.length();
+        this.lineSeparatorBytes = System.lineSeparator().getBytes(StandardCharsets.UTF_8).length;
+    }
+
+    @Override
+    public void out(char[][] chars) {
+        long before = getBytesWritten();
+        begin(chars[0].length);
+        if (last == null || last.length != chars.length || last[0].length != chars[0].length) {
+            if (drawnRows > 0) {
+                append(RESTORE_CURSOR);
+                moveRows(-drawnRows);
+            }
+            append(CLEAR_BELOW);
+            for (char[] row : chars) {
+                outRow(row);
+            }
+            // scroll now, if the screen must, and come back to the line under the art
+            for (int i = 0; i < RESERVED_LINES; i++) {
+                endRow();
+            }
+            moveRows(-RESERVED_LINES);
+            append(SAVE_CURSOR);
+        } else {
+            append(RESTORE_CURSOR);
+            cursorRow = chars.length;
+            for (int y = 0; y < chars.length; y++) {
+                outChangedRuns(y, last[y], chars[y]);
+            }
+            append(RESTORE_CURSOR);
+        }
+        drawnRows = chars.length;
+        append(CLEAR_BELOW);
+        end();
+        long frameFull = (long) chars.length * (chars[0].length * cellWidth + lineSeparatorBytes);
+        long frameDelta = getBytesWritten() - before;
+        fullBytes += frameFull;
+        deltaBytes += frameDelta;
+        last = new char[chars.length][];
+        for (int y = 0; y < chars.length; y++) {
+            last[y] = chars[y].clone();
+        }
+        System.out.printf("%d of %d bytes written, %d bytes saved so far%n",
+                frameDelta, frameFull, Math.max(0, fullBytes - deltaBytes));
+    }
+
+    /**
+     * Forgets the last output, so the next output is drawn whole.
+     */
+    public void reset() {
+        last = null;
+    }
+
+    /**
+     * Rewrites the runs of a row that changed.
+     */
+    private void outChangedRuns(int y, char[] before, char[] after) {
+        int x = 0;
+        while (x < after.length) {
+            if (before[x] == after[x]) {
+                x++;
+                continue;
+            }
+            int start = x;
+            int end = x + 1;
+            int unchanged = 0;
+            for (int i = end; i < after.length; i++) {
+                if (before[i] == after[i]) {
+                    unchanged++;
+                    if (unchanged * cellWidth > CURSOR_MOVE_BYTES) {
+                        break;
+                    }
+                } else {
+                    unchanged = 0;
+                    end = i + 1;
+                }
+            }
+            moveTo(y, start);
+            for (int i = start; i < end; i++) {
+                appendCell(after[i]);
+            }
+            x = end;
+        }
+    }
+
+    /**
+     * Moves the cursor to a cell of the art, counted from 0, from the row it is on.
+     */
+    private void moveTo(int y, int x) {
+        moveRows(y - cursorRow);
+        cursorRow = y;
+        append((ESCAPE + (x * cellWidth + 1) + "G").getBytes(StandardCharsets.US_ASCII));
+    }
+
+    /**
+     * Moves the cursor up or down a number of rows, keeping its column.
+     */
+    private void moveRows(int rows) {
+        if (rows != 0) {
+            append((ESCAPE + Math.abs(rows) + (rows < 0 ? "A" : "B")).getBytes(StandardCharsets.US_ASCII));
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package ascii_output;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Locale;
+import java.util.logging.Logger;
+
+/**
+ * Output a sequence of 2D arrays of chars to a single HTML file, which plays them as an
+ * animation in a web browser. The frames are written as they are made, as JavaScript
+ * strings, followed by a short script that shows them in turn.
+ */
+public class HtmlAnimationOutput implements AnimationOutput {
+    private static final double BASE_LINE_SPACING = 0.8;
+    private static final double BASE_FONT_SIZE = 150.0;
+    private static final String ART_ID = "art";
+    private static final String PLAYER =
+        "var p=document.getElementById(\""+ART_ID+"\"),i=0;\n"+
+        "function show(){p.textContent=frames[i];i=(i+1)%frames.length;}\n"+
+        "show();if(frames.length>1){setInterval(show,1000/fps);}\n";
+
+    private final String fontName;
+    private final String filename;
+    private Writer writer;
+    private boolean firstFrame;
+
+    public HtmlAnimationOutput(String filename, String fontName) {
+        this.fontName = fontName;
+        this.filename = filename;
+    }
+
+    @Override
+    public void begin(int columns, double framesPerSecond) {
+        try {
+            writer = Files.newBufferedWriter(Paths.get(filename), StandardCharsets.UTF_8);
+            firstFrame = true;
+            writer.write(String.format(Locale.ROOT,
+                "<!DOCTYPE html>\n"+
+                "<html>\n"+
+                "<head><meta charset=\"utf-8\"></head>\n"+
+                "<body style=\""+
+                    "\tCOLOR:#000000;"+
+                    "\tTEXT-ALIGN:center;"+
+                    "\tFONT-SIZE:1px;\">\n"+
+                "<p id=\""+ART_ID+"\" style=\""+
+                    "\twhite-space:pre;"+
+                    "\tFONT-FAMILY:%s;"+
+                    "\tFONT-SIZE:%frem;"+
+                    "\tLETTER-SPACING:0.15em;"+
+                    "\tLINE-HEIGHT:%fem;\"></p>\n"+
+                "<script>\n"+
+                "var fps=%s;\n"+
+                "var frames=[\n",
+                fontName, BASE_FONT_SIZE/columns, BASE_LINE_SPACING,
+                Double.toString(framesPerSecond > 0 ? framesPerSecond : 1)));
+        } catch(IOException e) {
+            fail();
+        }
+    }
+
+    @Override
+    public void frame(char[][] chars) {
+        if (writer == null) {
+            return;
+        }
+        StringBuilder frame = new StringBuilder(chars.length * (chars[0].length + 2) + 4);
+        frame.append(firstFrame ? "\"" : ",\"");
+        firstFrame = false;
+        for (int y = 0; y < chars.length; y++) {
+            if (y > 0) {
+                frame.append("\\n");
+            }
+            for (char c : chars[y]) {
+                switch (c) {
+                    case '"' -> frame.append("\\\"");
+                    case '\\' -> frame.append("\\\\");
+                    case '<' -> frame.append("\\x3c");
+                    default -> frame.append(c);
+                }
+            }
+        }
+        frame.append("\"\n");
+        try {
+            writer.write(frame.toString());
+        } catch(IOException e) {
+            fail();
+        }
+    }
+
+    @Override
+    public void end() {
+        if (writer == null) {
+            return;
+        }
+        try {
+            writer.write("];\n" + PLAYER + "</script>\n</body>\n</html>\n");
+            writer.close();
+            writer = null;
+        } catch(IOException e) {
+            fail();
+        }
+    }
+
+    /**
+     * Logs the failure and abandons the file.
+     */
+    private void fail() {
+        Logger.getGlobal().severe(String.format("Failed to write to \"%s\"", filename));
+        if (writer != null) {
+            try {
+                writer.close();
+            } catch (IOException ignored) {
+                // Already failed, nothing more to report.
+            }
+            writer = null;
+        }
+    }
+}
@@ -1,63 +1,288 @@
 package ascii_output;
 
-import java.io.BufferedWriter;
-import java.io.FileWriter;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Locale;
 import java.util.logging.Logger;
+import java.util.zip.GZIPOutputStream;
 
 /**
  * Output a 2D array of chars to an HTML file viewable in a web browser.
+ * The chars are escaped through a precomputed table into a reusable byte buffer,
+ * which is written to the file through a channel in large chunks.
+ * The page is declared UTF-8, and chars outside ASCII are encoded as such.
+ * Optionally the file is gzip compressed, and runs of the same char are written
+ * run-length encoded, to be expanded by a short script when the page loads.
+ * Dense art, such as braille patterns, is laid out without letter spacing and with lines twice
+ * as high as a char is wide, so the dots of neighboring chars form an even grid.
  * @author Dan Nirel
  */
-public class HtmlAsciiOutput implements AsciiOutput {
+public class HtmlAsciiOutput implements StreamingAsciiOutput {
     private static final double BASE_LINE_SPACING = 0.8;
+    private static final double BASE_LETTER_SPACING = 0.15;
+    private static final double DENSE_LINE_SPACING = 1.2;
+    private static final double DENSE_LETTER_SPACING = 0;
     private static final double BASE_FONT_SIZE = 150.0;
+    private static final int ASCII_LIMIT = 0x80;
+    private static final int INITIAL_BUFFER = 1 << 16;
+    private static final int CHUNK_BYTES = 1 << 20;
+    /**
+     * Run-length encoding: a run of at least MIN_RUN chars c is written as
+     * RUN_MARKER count RUN_END c, and a literal RUN_MARKER is doubled.
+     */
+    private static final int MIN_RUN = 5;
+    private static final char RUN_MARKER = '~';
+    private static final char RUN_END = ';';
+    private static final String ART_ID = "art";
+    private static final String RUN_LENGTH_DECODER =
+        "<script>\n"+
+        "(function(){var p=document.getElementById(\""+ART_ID+"\"),s=p.textContent,o=\"\",i=0;\n"+
+        "while(i<s.length){var c=s[i++];if(c!==\""+RUN_MARKER+"\"){o+=c;continue;}\n"+
+        "if(s[i]===\""+RUN_MARKER+"\"){o+=c;i++;continue;}\n"+
+        "var j=s.indexOf(\""+RUN_END+"\",i);o+=s[j+1].repeat(+s.slice(i,j));i=j+2;}\n"+
+        "p.textContent=o;})();\n"+
+        "</script>\n";
+    private static final byte[][] ESCAPES = buildEscapes();
+    private static final byte[] LINE_SEPARATOR = System.lineSeparator().getBytes(StandardCharsets.UTF_8);
 
     private final String fontName;
     private final String filename;
+    private final boolean gzip;
+    private final boolean runLength;
+    private final boolean dense;
+    /**
+     * The channel written to instead of the file, or null to write the file.
+     */
+    private final WritableByteChannel target;
+    private WritableByteChannel channel;
+    private byte[] buffer = new byte[INITIAL_BUFFER];
+    private int length = 0;
 
     public HtmlAsciiOutput(String filename, String fontName) {
+        this(filename, fontName, false, false);
+    }
+
+    /**
+     * @param filename the file to write, the caller chooses its extension.
+     * @param fontName the font the art is shown in.
+     * @param gzip whether to gzip compress the file.
+     * @param runLength whether to run-length encode runs of the same char.
+     */
+    public HtmlAsciiOutput(String filename, String fontName, boolean gzip, boolean runLength) {
+        this(filename, fontName, gzip, runLength, false);
+    }
+
+    /**
+     * @param filename the file to write, the caller chooses its extension.
+     * @param fontName the font the art is shown in.
+     * @param gzip whether to gzip compress the file.
+     * @param runLength whether to run-length encode runs of the same char.
+     * @param dense whether to lay the chars out edge to edge, for art made of dots.
+     */
+    public HtmlAsciiOutput(String filename, String fontName, boolean gzip, boolean runLength, boolean dense) {
         this.fontName = fontName;
         this.filename = filename;
+        this.gzip = gzip;
+        this.runLength = runLength;
+        this.dense = dense;
+        this.target = null;
+    }
+
+    /**
+     * Output to a channel instead of a file, such as the body of a response.
+     * The channel is closed at the end of the output.
+     * @param target the channel to write.
+     * @param fontName the font the art is shown in.
+     * @param runLength whether to run-length encode runs of the same char.
+     */
+    public HtmlAsciiOutput(WritableByteChannel target, String fontName, boolean runLength) {
+        this.fontName = fontName;
+        this.filename = target.toString();
+        this.gzip = false;
+        this.runLength = runLength;
+        this.dense = false;
+        this.target = target;
+    }
+
+    /**
+     * The bytes each ASCII char is written as.
+     */
+    private static byte[][] buildEscapes() {
+        byte[][] escapes = new byte[ASCII_LIMIT][];
+        for (char c = 0; c < ASCII_LIMIT; c++) {
+            escapes[c] = new byte[]{(byte) c};
+        }
+        escapes['<'] = "&lt;".getBytes(StandardCharsets.US_ASCII);
+        escapes['>'] = "&gt;".getBytes(StandardCharsets.US_ASCII);
+        escapes['&'] = "&amp;".getBytes(StandardCharsets.US_ASCII);
+        return escapes;
     }
 
     @Override
-    public void out(char[][] chars) {
-        try(BufferedWriter writer = new BufferedWriter(new FileWriter(filename))) {
-            writer.write(String.format(
+    public void begin(int columns) {
+        try {
+            if (target != null) {
+                channel = target;
+            } else {
+                FileChannel file = FileChannel.open(Paths.get(filename), StandardOpenOption.CREATE,
+                        StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+                channel = gzip ? Channels.newChannel(new GZIPOutputStream(Channels.newOutputStream(file),
+                        CHUNK_BYTES)) : file;
+            }
+            length = 0;
+            append(String.format(Locale.ROOT,
                 "<!DOCTYPE html>\n"+
                 "<html>\n"+
+                "<head><meta charset=\"utf-8\"></head>\n"+
                 "<body style=\""+
                     "\tCOLOR:#000000;"+
                     "\tTEXT-ALIGN:center;"+
                     "\tFONT-SIZE:1px;\">\n"+
-                "<p style=\""+
+                "<p "+(runLength ? "id=\""+ART_ID+"\" " : "")+"style=\""+
                     "\twhite-space:pre;"+
                     "\tFONT-FAMILY:%s;"+
                     "\tFONT-SIZE:%frem;"+
-                    "\tLETTER-SPACING:0.15em;"+
+                    "\tLETTER-SPACING:%fem;"+
                     "\tLINE-HEIGHT:%fem;\">\n",
-                    fontName, BASE_FONT_SIZE/chars[0].length, BASE_LINE_SPACING));
-
-            for(int y = 0 ; y < chars.length ; y++) {
-                for (int x = 0; x < chars[y].length ; x++) {
-                    String htmlRep;
-                    switch(chars[y][x]) {
-                        case '<': htmlRep = "&lt;";  break;
-                        case '>': htmlRep = "&gt;";  break;
-                        case '&': htmlRep = "&amp;"; break;
-                        default:  htmlRep = String.valueOf(chars[y][x]);
-                    }
-                    writer.write(htmlRep);
+                    fontName, BASE_FONT_SIZE/columns, dense ? DENSE_LETTER_SPACING : BASE_LETTER_SPACING,
+                    dense ? DENSE_LINE_SPACING : BASE_LINE_SPACING));
+        } catch(IOException e) {
+            fail();
+        }
+    }
+
+    @Override
+    public void outRow(char[] row) {
+        if (channel == null) {
+            return;
+        }
+        for (int x = 0; x < row.length; x++) {
+            char c = row[x];
+            int run = 1;
+            if (runLength) {
+                while (x + run < row.length && row[x + run] == c) {
+                    run++;
+                }
+            }
+            if (run >= MIN_RUN) {
+                append(RUN_MARKER + Integer.toString(run) + RUN_END);
+                appendChar(c);
+                x += run - 1;
+            } else {
+                if (runLength && c == RUN_MARKER) {
+                    appendChar(c);
                 }
-                writer.newLine();
+                appendChar(c);
             }
-            writer.write(
-                "</p>\n"+
-                "</body>\n"+
-                "</html>\n");
+        }
+        endRow();
+    }
+
+    @Override
+    public void end() {
+        if (channel == null) {
+            return;
+        }
+        append(
+            "</p>\n"+
+            (runLength ? RUN_LENGTH_DECODER : "")+
+            "</body>\n"+
+            "</html>\n");
+        flush();
+        try {
+            channel.close();
+            channel = null;
         } catch(IOException e) {
-            Logger.getGlobal().severe(String.format("Failed to write to \"%s\"", filename));
+            fail();
+        }
+    }
+
+    /**
+     * @return whether the file is open for writing.
+     */
+    boolean isOpen() {
+        return channel != null;
+    }
+
+    /**
+     * Appends the line separator to the buffer, and writes the buffer if it is large.
+     */
+    void endRow() {
+        append(LINE_SEPARATOR);
+        if (length >= CHUNK_BYTES) {
+            flush();
+        }
+    }
+
+    /**
+     * Appends a char to the buffer, escaped.
+     */
+    void appendChar(char c) {
+        if (c < ASCII_LIMIT) {
+            append(ESCAPES[c]);
+        } else {
+            ensureCapacity(Utf8.MAX_BYTES);
+            length = Utf8.encode(c, buffer, length);
+        }
+    }
+
+    /**
+     * Appends markup to the buffer, as is.
+     */
+    void append(String text) {
+        append(text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private void append(byte[] bytes) {
+        ensureCapacity(bytes.length);
+        System.arraycopy(bytes, 0, buffer, length, bytes.length);
+        length += bytes.length;
+    }
+
+    private void ensureCapacity(int extra) {
+        if (length + extra > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, length + extra));
+        }
+    }
+
+    /**
+     * Writes the buffer to the file.
+     */
+    private void flush() {
+        if (channel == null) {
+            return;
+        }
+        try {
+            ByteBuffer bytes = ByteBuffer.wrap(buffer, 0, length);
+            while (bytes.hasRemaining()) {
+                channel.write(bytes);
+            }
+            length = 0;
+        } catch(IOException e) {
+            fail();
+        }
+    }
+
+    /**
+     * Logs the failure and abandons the file.
+     */
+    private void fail() {
+        Logger.getGlobal().severe(String.format("Failed to write to \"%s\"", filename));
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException ignored) {
+                // Already failed, nothing more to report.
+            }
+            channel = null;
         }
+        length = 0;
     }
 }
@@ -0,0 +1,56 @@
+package ascii_output;
+
+/**
+ * Output a 2D array of chars to an HTML file, each in its own color.
+ * Adjacent chars of the same quantized color share a single span.
+ */
+public class HtmlColorAsciiOutput extends HtmlAsciiOutput implements ColorAsciiOutput {
+    private static final String SPAN_END = "</span>";
+
+    private final int colorBits;
+
+    /**
+     * Output keeping DEFAULT_COLOR_BITS of each channel.
+     * @param filename the file to write.
+     * @param fontName the font the art is shown in.
+     */
+    public HtmlColorAsciiOutput(String filename, String fontName) {
+        this(filename, fontName, false, DEFAULT_COLOR_BITS);
+    }
+
+    /**
+     * @param filename the file to write, the caller chooses its extension.
+     * @param fontName the font the art is shown in.
+     * @param gzip whether to gzip compress the file.
+     * @param colorBits the number of bits kept of each color channel, in [1, 8].
+     */
+    public HtmlColorAsciiOutput(String filename, String fontName, boolean gzip, int colorBits) {
+        super(filename, fontName, gzip, false);
+        if (colorBits < 1 || colorBits > 8) {
+            throw new IllegalArgumentException("color bits out of bounds.");
+        }
+        this.colorBits = colorBits;
+    }
+
+    @Override
+    public void out(char[][] chars, int[][] colors) {
+        begin(chars[0].length);
+        for (int y = 0; y < chars.length && isOpen(); y++) {
+            int current = -1;
+            for (int x = 0; x < chars[y].length; x++) {
+                int color = ColorAsciiOutput.quantize(colors[y][x], colorBits) & 0xFFFFFF;
+                if (color != current) {
+                    if (current != -1) {
+                        append(SPAN_END);
+                    }
+                    append(String.format("<span style=\"color:#%06x\">", color));
+                    current = color;
+                }
+                appendChar(chars[y][x]);
+            }
+            append(SPAN_END);
+            endRow();
+        }
+        end();
+    }
+}
@@ -0,0 +1,34 @@
+package ascii_output;
+
+/**
+ * An object implementing this interface can also output a 2D array of chars
+ * a row at a time, as the rows are made.
+ */
+public interface StreamingAsciiOutput extends AsciiOutput {
+    /**
+     * Start the output of rows of the specified number of chars
+     */
+    void begin(int columns);
+
+    /**
+     * Output the next row of chars
+     */
+    void outRow(char[] row);
+
+    /**
+     * Finish the output, after the last row
+     */
+    void end();
+
+    /**
+     * Output the specified 2D array of chars, a row at a time
+     */
+    @Override
+    default void out(char[][] chars) {
+        begin(chars[0].length);
+        for (char[] row : chars) {
+            outRow(row);
+        }
+        end();
+    }
+}
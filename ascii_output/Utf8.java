@@ -0,0 +1,45 @@
+package ascii_output;
+
+/**
+ * Encodes single chars as UTF-8 straight into an output buffer, without making a String of each.
+ * Chars are encoded one at a time, so a lone surrogate, which is half of a char outside the
+ * basic plane, is written as REPLACEMENT, as String.getBytes writes it.
+ */
+final class Utf8 {
+    /**
+     * The most bytes a char is encoded in
+     */
+    static final int MAX_BYTES = 3;
+    private static final byte REPLACEMENT = '?';
+    private static final int ONE_BYTE_LIMIT = 0x80;
+    private static final int TWO_BYTES_LIMIT = 0x800;
+
+    private Utf8() {}
+
+    /**
+     * Encodes a char into a buffer.
+     * @param c the char.
+     * @param buffer the buffer, with at least MAX_BYTES bytes from offset.
+     * @param offset the index the first byte is written at.
+     * @return the index after the last byte written.
+     */
+    static int encode(char c, byte[] buffer, int offset) {
+        if (c < ONE_BYTE_LIMIT) {
+            buffer[offset] = (byte) c;
+            return offset + 1;
+        }
+        if (c < TWO_BYTES_LIMIT) {
+            buffer[offset] = (byte) (0xC0 | c >> 6);
+            buffer[offset + 1] = (byte) (0x80 | c & 0x3F);
+            return offset + 2;
+        }
+        if (Character.isSurrogate(c)) {
+            buffer[offset] = REPLACEMENT;
+            return offset + 1;
+        }
+        buffer[offset] = (byte) (0xE0 | c >> 12);
+        buffer[offset + 1] = (byte) (0x80 | c >> 6 & 0x3F);
+        buffer[offset + 2] = (byte) (0x80 | c & 0x3F);
+        return offset + 3;
+    }
+}
@@ -0,0 +1,125 @@
+package benchmark;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.LongSupplier;
+
+/**
+ * A small benchmark harness: warms an operation up, then times it over several iterations,
+ * each repeating the operation for at least a minimum time.
+ * The operations return a checksum, which is kept so the JIT cannot drop their work.
+ */
+final class BenchmarkRunner {
+
+    /**
+     * The timing of one benchmark with one set of parameters.
+     * @param benchmark The name of the benchmark.
+     * @param params The parameters, in order.
+     * @param operations The number of operations timed.
+     * @param meanNanos The mean time of an operation over the iterations.
+     * @param stdevNanos The standard deviation of the per-iteration means.
+     * @param minNanos The fastest per-iteration mean.
+     */
+    record Measurement(String benchmark, Map<String, Object> params, long operations,
+                       double meanNanos, double stdevNanos, double minNanos) {
+
+        /**
+         * @return the measurement as a single line JSON object.
+         */
+        String toJson() {
+            StringBuilder json = new StringBuilder("{\"benchmark\":\"").append(benchmark).append("\",\"params\":{");
+            String separator = "";
+            for (Map.Entry<String, Object> param : params.entrySet()) {
+                json.append(separator).append('"').append(param.getKey()).append("\":");
+                if (param.getValue() instanceof Number) {
+                    json.append(param.getValue());
+                } else {
+                    json.append('"').append(param.getValue()).append('"');
+                }
+                separator = ",";
+            }
+            return json.append(String.format(Locale.ROOT,
+                    "},\"operations\":%d,\"mean_ns\":%.1f,\"stdev_ns\":%.1f,\"min_ns\":%.1f}",
+                    operations, meanNanos, stdevNanos, minNanos)).toString();
+        }
+
+        /**
+         * @return the measurement as a line of human readable text.
+         */
+        String toText() {
+            return String.format(Locale.ROOT, "%-20s %-60s %14.1f ns/op +- %.1f",
+                    benchmark, params, meanNanos, stdevNanos);
+        }
+    }
+
+    private final int warmupIterations;
+    private final int measuredIterations;
+    private final long iterationNanos;
+    private long checksum = 0;
+
+    /**
+     * Constructor for the BenchmarkRunner class.
+     * @param warmupIterations The number of iterations run before timing.
+     * @param measuredIterations The number of timed iterations.
+     * @param iterationNanos The minimum time of an iteration.
+     */
+    BenchmarkRunner(int warmupIterations, int measuredIterations, long iterationNanos) {
+        this.warmupIterations = warmupIterations;
+        this.measuredIterations = measuredIterations;
+        this.iterationNanos = iterationNanos;
+    }
+
+    /**
+     * Times an operation.
+     * @param benchmark The name of the benchmark.
+     * @param params The parameters of the benchmark.
+     * @param operation The operation, returning a checksum of its result.
+     * @return The measurement.
+     */
+    Measurement run(String benchmark, Map<String, Object> params, LongSupplier operation) {
+        for (int i = 0; i < warmupIterations; i++) {
+            iterate(operation);
+        }
+        double[] means = new double[measuredIterations];
+        long operations = 0;
+        for (int i = 0; i < measuredIterations; i++) {
+            long start = System.nanoTime();
+            long count = iterate(operation);
+            means[i] = (double) (System.nanoTime() - start) / count;
+            operations += count;
+        }
+        double mean = 0;
+        double min = Double.MAX_VALUE;
+        for (double iterationMean : means) {
+            mean += iterationMean / means.length;
+            min = Math.min(min, iterationMean);
+        }
+        double variance = 0;
+        for (double iterationMean : means) {
+            variance += (iterationMean - mean) * (iterationMean - mean) / means.length;
+        }
+        return new Measurement(benchmark, params, operations, mean, Math.sqrt(variance), min);
+    }
+
+    /**
+     * Runs the operation until the iteration time has passed.
+     * @param operation The operation.
+     * @return The number of times the operation was run.
+     */
+    private long iterate(LongSupplier operation) {
+        long end = System.nanoTime() + iterationNanos;
+        long count = 0;
+        do {
+            checksum += operation.getAsLong();
+            count++;
+        } while (System.nanoTime() < end);
+        return count;
+    }
+
+    /**
+     * @return the sum of the checksums of all the operations run.
+     */
+    long getChecksum() {
+        return checksum;
+    }
+}
@@ -0,0 +1,71 @@
+package benchmark;
+
+import image.Dithering;
+import image.PrepareImage;
+import image_char_matching.CharMatcherSnapshot;
+import image_char_matching.SubImgCharMatcher;
+
+import java.util.Arrays;
+
+/**
+ * Measures how each dithering method scales from 1 to N threads on the brightness of a large
+ * synthetic gradient, a cell per pixel, dithered to the levels of the digits,
+ * and checks that every parallelism level gives the same result as the sequential one.
+ * Usage: java benchmark.DitheringBenchmark [width] [height] [maxThreads]
+ */
+public class DitheringBenchmark {
+    private static final int DEFAULT_WIDTH = 4096;
+    private static final int DEFAULT_HEIGHT = 3072;
+    private static final char[] DIGITS = {'0', '1', '2', '3', '4', '5', '6', '7', '8', '9'};
+    private static final String[] METHODS = {Dithering.BAYER, Dithering.FLOYD_STEINBERG, Dithering.ATKINSON};
+    private static final int WARMUP_RUNS = 3;
+    private static final int MEASURED_RUNS = 5;
+    private static final double NANOS_IN_MILLI = 1e6;
+
+    private static double[][] copy(double[][] matrix) {
+        double[][] copy = new double[matrix.length][];
+        for (int i = 0; i < matrix.length; i++) {
+            copy[i] = matrix[i].clone();
+        }
+        return copy;
+    }
+
+    public static void main(String[] args) {
+        int width = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_WIDTH;
+        int height = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_HEIGHT;
+        int maxThreads = args.length > 2 ? Integer.parseInt(args[2]) :
+                Runtime.getRuntime().availableProcessors();
+        double[][] brightness = new PrepareImage(SyntheticImages.gradient(width, height), 1, false)
+                .getImageBrightness(width);
+        CharMatcherSnapshot matcher = new SubImgCharMatcher(DIGITS).snapshot();
+
+        System.out.printf("brightness %dx%d, %d levels%n", brightness[0].length, brightness.length, matcher.levels());
+        System.out.println("method\tthreads\tms\tspeedup\tidentical");
+        for (String method : METHODS) {
+            double[][] expected = copy(brightness);
+            new Dithering(method, 1).dither(expected, matcher::quantize, matcher.levels());
+            double sequentialMillis = 0;
+            for (int threads = 1; threads <= maxThreads; threads++) {
+                Dithering dithering = new Dithering(method, threads);
+                double[][] dithered = null;
+                for (int i = 0; i < WARMUP_RUNS; i++) {
+                    dithered = copy(brightness);
+                    dithering.dither(dithered, matcher::quantize, matcher.levels());
+                }
+                long nanos = 0;
+                for (int i = 0; i < MEASURED_RUNS; i++) {
+                    dithered = copy(brightness);
+                    long start = System.nanoTime();
+                    dithering.dither(dithered, matcher::quantize, matcher.levels());
+                    nanos += System.nanoTime() - start;
+                }
+                double millis = nanos / NANOS_IN_MILLI / MEASURED_RUNS;
+                if (threads == 1) {
+                    sequentialMillis = millis;
+                }
+                System.out.printf("%s\t%d\t%.1f\t%.2f\t%b%n", method, threads, millis, sequentialMillis / millis,
+                        Arrays.deepEquals(expected, dithered));
+            }
+        }
+    }
+}
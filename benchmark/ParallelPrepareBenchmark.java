@@ -0,0 +1,74 @@
+package benchmark;
+
+import image.Image;
+import image.PrepareImage;
+
+import java.util.Arrays;
+
+/**
+ * Measures how PrepareImage scales from 1 to N threads on a synthetic image,
+ * and checks that every parallelism level gives the same brightness as the sequential one.
+ * Also checks that the brightness of a resolution does not depend on the resolutions asked for
+ * before it, which the brightness pyramid of PrepareImage reuses.
+ * Usage: java benchmark.ParallelPrepareBenchmark [width] [height] [maxThreads]
+ */
+public class ParallelPrepareBenchmark {
+    private static final int DEFAULT_WIDTH = 6000;
+    private static final int DEFAULT_HEIGHT = 4000;
+    private static final int RESOLUTION = 256;
+    private static final int WARMUP_RUNS = 3;
+    private static final int MEASURED_RUNS = 5;
+    private static final double NANOS_IN_MILLI = 1e6;
+    /**
+     * Resolutions of cells of even and odd sides, and their halves
+     */
+    private static final int[] ORDER_RESOLUTIONS = {256, 255, 128, 100, 50, 43, 25, 24, 20, 10, 3};
+
+    /**
+     * Checks that each resolution, asked for right after each other one, gives the brightness
+     * of a fresh PrepareImage.
+     */
+    private static boolean orderIndependent(Image image) {
+        for (int second : ORDER_RESOLUTIONS) {
+            double[][] expected = new PrepareImage(image).getImageBrightness(second);
+            for (int first : ORDER_RESOLUTIONS) {
+                PrepareImage prepared = new PrepareImage(image);
+                prepared.getImageBrightness(first);
+                if (!Arrays.deepEquals(expected, prepared.getImageBrightness(second))) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    public static void main(String[] args) {
+        int width = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_WIDTH;
+        int height = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_HEIGHT;
+        int maxThreads = args.length > 2 ? Integer.parseInt(args[2]) :
+                Runtime.getRuntime().availableProcessors();
+        Image image = SyntheticImages.noise(width, height);
+        double[][] expected = new PrepareImage(image).getImageBrightness(RESOLUTION);
+
+        System.out.printf("image %dx%d, resolution %d%n", width, height, RESOLUTION);
+        System.out.println("threads\tms\tspeedup\tidentical");
+        double sequentialMillis = 0;
+        for (int threads = 1; threads <= maxThreads; threads++) {
+            double[][] brightness = null;
+            for (int i = 0; i < WARMUP_RUNS; i++) {
+                brightness = new PrepareImage(image, threads).getImageBrightness(RESOLUTION);
+            }
+            long start = System.nanoTime();
+            for (int i = 0; i < MEASURED_RUNS; i++) {
+                brightness = new PrepareImage(image, threads).getImageBrightness(RESOLUTION);
+            }
+            double millis = (System.nanoTime() - start) / NANOS_IN_MILLI / MEASURED_RUNS;
+            if (threads == 1) {
+                sequentialMillis = millis;
+            }
+            System.out.printf("%d\t%.1f\t%.2f\t%b%n", threads, millis, sequentialMillis / millis,
+                    Arrays.deepEquals(expected, brightness));
+        }
+        System.out.println("order independent " + orderIndependent(image));
+    }
+}
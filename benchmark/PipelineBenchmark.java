@@ -0,0 +1,252 @@
+package benchmark;
+
+import ascii_output.AsciiOutput;
+import ascii_output.ConsoleAsciiOutput;
+import ascii_output.HtmlAsciiOutput;
+import image.Image;
+import image.PrepareImage;
+import image_char_matching.SubImgCharMatcher;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.LongSupplier;
+
+/**
+ * Benchmarks every stage of the image to ascii art pipeline, and the whole pipeline, over a
+ * grid of image sizes, resolutions, charset sizes and rounding methods.
+ * The images are generated, so no image files are needed. The results are appended to a
+ * JSON lines file, one line describing the run and then one line per measurement,
+ * so runs can be compared over time.
+ * The JMH module, jmh, holds the same benchmarks under JMH. This harness is its fallback for
+ * machines where JMH cannot be fetched.
+ * Usage: java benchmark.PipelineBenchmark [--sizes 640x480,2048x1536] [--resolutions 32,128]
+ *        [--charsets 10,95] [--rounds abs,up,down] [--out FILE] [--quick]
+ */
+public class PipelineBenchmark {
+    private static final String DEFAULT_SIZES = "640x480,2048x1536";
+    private static final String DEFAULT_RESOLUTIONS = "32,128";
+    private static final String DEFAULT_CHARSETS = "10,95";
+    private static final String DEFAULT_ROUNDS = "abs,up,down";
+    private static final String DEFAULT_OUT = "benchmark_results.jsonl";
+    private static final String QUICK_OPTION = "--quick";
+    private static final String HTML_FONT = "Courier New";
+    private static final int WARMUP_ITERATIONS = 3;
+    private static final int MEASURED_ITERATIONS = 5;
+    private static final long ITERATION_NANOS = 500_000_000L;
+    private static final long QUICK_ITERATION_NANOS = 50_000_000L;
+
+    private final Map<String, String> options = new HashMap<>();
+    private final BenchmarkRunner runner;
+    private final List<BenchmarkRunner.Measurement> measurements = new ArrayList<>();
+    private final Path workDir;
+
+    /**
+     * Parses the command line and creates a directory for the generated files.
+     * @param args the command line arguments.
+     * @throws IOException if the directory could not be created.
+     */
+    private PipelineBenchmark(String[] args) throws IOException {
+        boolean quick = false;
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals(QUICK_OPTION)) {
+                quick = true;
+            } else if (args[i].startsWith("--") && i + 1 < args.length) {
+                options.put(args[i], args[++i]);
+            } else {
+                throw new IllegalArgumentException("bad argument " + args[i]);
+            }
+        }
+        runner = quick ? new BenchmarkRunner(1, 2, QUICK_ITERATION_NANOS) :
+                new BenchmarkRunner(WARMUP_ITERATIONS, MEASURED_ITERATIONS, ITERATION_NANOS);
+        workDir = Files.createTempDirectory("ascii-bench");
+        workDir.toFile().deleteOnExit();
+    }
+
+    /**
+     * @return the values of a comma separated option.
+     */
+    private String[] option(String name, String defaultValue) {
+        return options.getOrDefault(name, defaultValue).split(",");
+    }
+
+    /**
+     * Creates the first charSize chars of the ASCII range.
+     */
+    private static char[] charset(int charSize) {
+        char[] chars = new char[charSize];
+        for (int i = 0; i < charSize; i++) {
+            chars[i] = (char) (SubImgCharMatcher.LOWER_ASCII + i);
+        }
+        return chars;
+    }
+
+    /**
+     * Writes an image as a PNG file, for the benchmark of loading it.
+     */
+    private Path writeImage(Image image, String name) throws IOException {
+        BufferedImage buffered = new BufferedImage(image.getWidth(), image.getHeight(),
+                BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < image.getHeight(); y++) {
+            for (int x = 0; x < image.getWidth(); x++) {
+                buffered.setRGB(x, y, image.getRgb(x, y));
+            }
+        }
+        Path path = workDir.resolve(name + ".png");
+        ImageIO.write(buffered, "png", path.toFile());
+        path.toFile().deleteOnExit();
+        return path;
+    }
+
+    /**
+     * Maps every cell to a char, as AsciiArtAlgorithm.run does.
+     */
+    private static char[][] match(double[][] brightness, SubImgCharMatcher matcher) {
+        char[][] chars = new char[brightness.length][brightness[0].length];
+        for (int y = 0; y < brightness.length; y++) {
+            for (int x = 0; x < brightness[y].length; x++) {
+                chars[y][x] = matcher.getCharByImageBrightness(brightness[y][x]);
+            }
+        }
+        return chars;
+    }
+
+    private static Map<String, Object> params(Object... keysAndValues) {
+        Map<String, Object> params = new LinkedHashMap<>();
+        for (int i = 0; i < keysAndValues.length; i += 2) {
+            params.put((String) keysAndValues[i], keysAndValues[i + 1]);
+        }
+        return params;
+    }
+
+    private void measure(String benchmark, Map<String, Object> params,
+                         LongSupplier operation) {
+        BenchmarkRunner.Measurement measurement = runner.run(benchmark, params, operation);
+        measurements.add(measurement);
+        System.out.println(measurement.toText());
+    }
+
+    /**
+     * Runs all the benchmarks over the parameter grid.
+     */
+    private void run() throws IOException {
+        PrintStream console = System.out;
+        PrintStream discard = new PrintStream(OutputStream.nullOutputStream());
+        for (String size : option("--sizes", DEFAULT_SIZES)) {
+            String[] dims = size.split("x");
+            int width = Integer.parseInt(dims[0]);
+            int height = Integer.parseInt(dims[1]);
+            Image image = SyntheticImages.gradient(width, height);
+            Path imageFile = writeImage(image, size);
+
+            measure("image.load", params("size", size), () -> {
+                try {
+                    return new Image(imageFile.toString()).getRgb(0, 0);
+                } catch (IOException e) {
+                    throw new IllegalStateException(e);
+                }
+            });
+            measure("image.prepare", params("size", size),
+                    () -> new PrepareImage(image).getOriginalImage().getWidth());
+            PrepareImage prepared = new PrepareImage(image);
+
+            for (String resolutionValue : option("--resolutions", DEFAULT_RESOLUTIONS)) {
+                int resolution = Integer.parseInt(resolutionValue);
+                if (resolution > width) {
+                    continue;
+                }
+                measure("image.brightness", params("size", size, "resolution", resolution),
+                        () -> prepared.getImageBrightness(resolution).length);
+                double[][] brightness = prepared.getImageBrightness(resolution);
+
+                char[][] art = null;
+                for (String charSizeValue : option("--charsets", DEFAULT_CHARSETS)) {
+                    int charSize = Integer.parseInt(charSizeValue);
+                    for (String round : option("--rounds", DEFAULT_ROUNDS)) {
+                        SubImgCharMatcher matcher = new SubImgCharMatcher(charset(charSize));
+                        matcher.setTypeOfRound(round);
+                        Map<String, Object> matchParams = params("size", size, "resolution", resolution,
+                                "charset", charSize, "round", round);
+                        measure("match", matchParams, () -> match(brightness, matcher)[0][0]);
+                        art = match(brightness, matcher);
+
+                        measure("end_to_end", matchParams, () -> {
+                            try {
+                                Image loaded = new Image(imageFile.toString());
+                                char[][] chars = match(new PrepareImage(loaded).getImageBrightness(resolution),
+                                        matcher);
+                                System.setOut(discard);
+                                new ConsoleAsciiOutput().out(chars);
+                                return chars[0][0];
+                            } catch (IOException e) {
+                                throw new IllegalStateException(e);
+                            } finally {
+                                System.setOut(console);
+                            }
+                        });
+                    }
+                }
+
+                char[][] chars = art;
+                AsciiOutput consoleOutput = new ConsoleAsciiOutput();
+                measure("output.console", params("size", size, "resolution", resolution), () -> {
+                    System.setOut(discard);
+                    try {
+                        consoleOutput.out(chars);
+                    } finally {
+                        System.setOut(console);
+                    }
+                    return chars.length;
+                });
+                Path htmlFile = workDir.resolve(size + "_" + resolution + ".html");
+                htmlFile.toFile().deleteOnExit();
+                AsciiOutput htmlOutput = new HtmlAsciiOutput(htmlFile.toString(), HTML_FONT);
+                measure("output.html", params("size", size, "resolution", resolution), () -> {
+                    htmlOutput.out(chars);
+                    return chars.length;
+                });
+            }
+        }
+        System.out.println("checksum " + runner.getChecksum());
+    }
+
+    /**
+     * Appends the results of this run to the results file.
+     */
+    private void writeResults() throws IOException {
+        Path out = Paths.get(options.getOrDefault("--out", DEFAULT_OUT));
+        try (BufferedWriter writer = Files.newBufferedWriter(out, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+            writer.write(String.format(Locale.ROOT, "{\"run\":\"%s\",\"java\":\"%s\",\"cpus\":%d}",
+                    Instant.now(), System.getProperty("java.version"),
+                    Runtime.getRuntime().availableProcessors()));
+            writer.newLine();
+            for (BenchmarkRunner.Measurement measurement : measurements) {
+                writer.write(measurement.toJson());
+                writer.newLine();
+            }
+        }
+        System.out.println("results appended to " + out);
+    }
+
+    public static void main(String[] args) throws IOException {
+        PipelineBenchmark benchmark = new PipelineBenchmark(args);
+        benchmark.run();
+        benchmark.writeResults();
+    }
+}
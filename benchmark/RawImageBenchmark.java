@@ -0,0 +1,110 @@
+package benchmark;
+
+import image.Image;
+import image.PrepareImage;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Compares loading and preparing an uncompressed image decoded with ImageIO, from a BMP file,
+ * with the memory-mapped fast path, from a binary PPM file of the same pixels, on a large
+ * synthetic image. Checks that both give identical brightness.
+ * Usage: java benchmark.RawImageBenchmark [width] [height] [--quick]
+ */
+public class RawImageBenchmark {
+    private static final int DEFAULT_WIDTH = 6000;
+    private static final int DEFAULT_HEIGHT = 4000;
+    private static final int RESOLUTION = 256;
+    private static final String QUICK_OPTION = "--quick";
+    private static final int WARMUP_ITERATIONS = 3;
+    private static final int MEASURED_ITERATIONS = 5;
+    private static final long ITERATION_NANOS = 1_000_000_000L;
+    private static final long QUICK_ITERATION_NANOS = 100_000_000L;
+
+    private static Map<String, Object> params(String format) {
+        Map<String, Object> params = new LinkedHashMap<>();
+        params.put("format", format);
+        return params;
+    }
+
+    private static Path writeBmp(Image image, Path dir) throws IOException {
+        BufferedImage buffered = new BufferedImage(image.getWidth(), image.getHeight(),
+                BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < image.getHeight(); y++) {
+            for (int x = 0; x < image.getWidth(); x++) {
+                buffered.setRGB(x, y, image.getRgb(x, y));
+            }
+        }
+        Path path = dir.resolve("image.bmp");
+        ImageIO.write(buffered, "bmp", path.toFile());
+        return path;
+    }
+
+    private static Path writePpm(Image image, Path dir) throws IOException {
+        Path path = dir.resolve("image.ppm");
+        byte[] row = new byte[image.getWidth() * 3];
+        try (OutputStream out = Files.newOutputStream(path)) {
+            out.write(String.format("P6\n%d %d\n255\n", image.getWidth(), image.getHeight())
+                    .getBytes(StandardCharsets.US_ASCII));
+            for (int y = 0; y < image.getHeight(); y++) {
+                for (int x = 0; x < image.getWidth(); x++) {
+                    int rgb = image.getRgb(x, y);
+                    row[x * 3] = (byte) (rgb >> 16);
+                    row[x * 3 + 1] = (byte) (rgb >> 8);
+                    row[x * 3 + 2] = (byte) rgb;
+                }
+                out.write(row);
+            }
+        }
+        return path;
+    }
+
+    private static Image load(Path path) {
+        try {
+            return new Image(path.toString());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        boolean quick = args.length > 0 && args[args.length - 1].equals(QUICK_OPTION);
+        int positional = quick ? args.length - 1 : args.length;
+        int width = positional > 0 ? Integer.parseInt(args[0]) : DEFAULT_WIDTH;
+        int height = positional > 1 ? Integer.parseInt(args[1]) : DEFAULT_HEIGHT;
+        BenchmarkRunner runner = quick ? new BenchmarkRunner(1, 2, QUICK_ITERATION_NANOS) :
+                new BenchmarkRunner(WARMUP_ITERATIONS, MEASURED_ITERATIONS, ITERATION_NANOS);
+        Image image = SyntheticImages.gradient(width, height);
+        Path dir = Files.createTempDirectory("raw-image-benchmark");
+        Path bmp = writeBmp(image, dir);
+        Path ppm = writePpm(image, dir);
+
+        System.out.printf("image %dx%d, resolution %d%n", width, height, RESOLUTION);
+        Map<String, Double> means = new LinkedHashMap<>();
+        for (Path path : new Path[]{bmp, ppm}) {
+            String format = path.getFileName().toString().substring("image.".length());
+            BenchmarkRunner.Measurement loadAndPrepare = runner.run("load_prepare", params(format),
+                    () -> new PrepareImage(load(path), 1, true).getImageBrightness(RESOLUTION).length);
+            System.out.println(loadAndPrepare.toText());
+            means.put(format, loadAndPrepare.meanNanos());
+        }
+        System.out.printf("load_prepare speedup %.2fx%n", means.get("bmp") / means.get("ppm"));
+        System.out.println("identical " + Arrays.deepEquals(
+                new PrepareImage(load(bmp), 1, true).getImageBrightness(RESOLUTION),
+                new PrepareImage(load(ppm), 1, true).getImageBrightness(RESOLUTION)));
+        System.out.println("checksum " + runner.getChecksum());
+        Files.delete(bmp);
+        Files.delete(ppm);
+        Files.delete(dir);
+    }
+}
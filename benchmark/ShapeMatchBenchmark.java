@@ -0,0 +1,111 @@
+package benchmark;
+
+import image.Image;
+import image.PrepareImage;
+import image_char_matching.CharMatcherSnapshot;
+import image_char_matching.GlyphMask;
+import image_char_matching.SubImgCharMatcher;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Compares matching cells to chars by brightness with matching them by shape, on a synthetic
+ * image, over a few resolutions and charset sizes. Every cell gets a mask, the worst case for
+ * matching by shape, which otherwise only masks the cells with enough contrast.
+ * Each way is timed end to end from the prepared image, and split into its two steps:
+ * computing the brightness or the masks of the cells, and matching them to chars.
+ * Usage: java benchmark.ShapeMatchBenchmark [width] [height] [--quick]
+ */
+public class ShapeMatchBenchmark {
+    private static final int DEFAULT_WIDTH = 2048;
+    private static final int DEFAULT_HEIGHT = 1536;
+    private static final int[] RESOLUTIONS = {64, 256};
+    private static final int[] CHARSETS = {10, 95};
+    private static final String QUICK_OPTION = "--quick";
+    private static final int WARMUP_ITERATIONS = 3;
+    private static final int MEASURED_ITERATIONS = 5;
+    private static final long ITERATION_NANOS = 500_000_000L;
+    private static final long QUICK_ITERATION_NANOS = 50_000_000L;
+
+    /**
+     * Creates the first charSize chars of the ASCII range.
+     */
+    private static char[] charset(int charSize) {
+        char[] chars = new char[charSize];
+        for (int i = 0; i < charSize; i++) {
+            chars[i] = (char) (SubImgCharMatcher.LOWER_ASCII + i);
+        }
+        return chars;
+    }
+
+    private static char[][] matchBrightness(double[][] brightness, CharMatcherSnapshot matcher) {
+        char[][] chars = new char[brightness.length][brightness[0].length];
+        for (int y = 0; y < brightness.length; y++) {
+            for (int x = 0; x < brightness[y].length; x++) {
+                chars[y][x] = matcher.getCharByImageBrightness(brightness[y][x]);
+            }
+        }
+        return chars;
+    }
+
+    private static char[][] matchShape(long[][][] masks, CharMatcherSnapshot matcher) {
+        char[][] chars = new char[masks.length][masks[0].length];
+        for (int y = 0; y < masks.length; y++) {
+            for (int x = 0; x < masks[y].length; x++) {
+                chars[y][x] = matcher.getCharByShape(masks[y][x]);
+            }
+        }
+        return chars;
+    }
+
+    private static Map<String, Object> params(int resolution) {
+        Map<String, Object> params = new LinkedHashMap<>();
+        params.put("resolution", resolution);
+        return params;
+    }
+
+    private static Map<String, Object> params(int resolution, int charSize) {
+        Map<String, Object> params = params(resolution);
+        params.put("charset", charSize);
+        return params;
+    }
+
+    public static void main(String[] args) {
+        boolean quick = args.length > 0 && args[args.length - 1].equals(QUICK_OPTION);
+        int positional = quick ? args.length - 1 : args.length;
+        int width = positional > 0 ? Integer.parseInt(args[0]) : DEFAULT_WIDTH;
+        int height = positional > 1 ? Integer.parseInt(args[1]) : DEFAULT_HEIGHT;
+        BenchmarkRunner runner = quick ? new BenchmarkRunner(1, 2, QUICK_ITERATION_NANOS) :
+                new BenchmarkRunner(WARMUP_ITERATIONS, MEASURED_ITERATIONS, ITERATION_NANOS);
+        Image image = SyntheticImages.gradient(width, height);
+        PrepareImage prepared = new PrepareImage(image);
+
+        System.out.printf("image %dx%d%n", width, height);
+        for (int resolution : RESOLUTIONS) {
+            double[][] brightness = prepared.getImageBrightness(resolution);
+            long[][][] masks = prepared.getCellMasks(resolution, GlyphMask.SIDE, 0);
+            System.out.println(runner.run("brightness", params(resolution),
+                    () -> prepared.getImageBrightness(resolution).length).toText());
+            System.out.println(runner.run("masks", params(resolution),
+                    () -> prepared.getCellMasks(resolution, GlyphMask.SIDE, 0).length).toText());
+            for (int charSize : CHARSETS) {
+                CharMatcherSnapshot matcher = new SubImgCharMatcher(charset(charSize)).snapshot();
+                System.out.println(runner.run("match.brightness", params(resolution, charSize),
+                        () -> matchBrightness(brightness, matcher)[0][0]).toText());
+                System.out.println(runner.run("match.shape", params(resolution, charSize),
+                        () -> matchShape(masks, matcher)[0][0]).toText());
+                BenchmarkRunner.Measurement byBrightness = runner.run("end_to_end.brightness",
+                        params(resolution, charSize),
+                        () -> matchBrightness(prepared.getImageBrightness(resolution), matcher)[0][0]);
+                BenchmarkRunner.Measurement byShape = runner.run("end_to_end.shape",
+                        params(resolution, charSize),
+                        () -> matchShape(prepared.getCellMasks(resolution, GlyphMask.SIDE, 0), matcher)[0][0]);
+                System.out.println(byBrightness.toText());
+                System.out.println(byShape.toText());
+                System.out.printf("shape / brightness: %.1fx%n", byShape.meanNanos() / byBrightness.meanNanos());
+            }
+        }
+        System.out.println("checksum " + runner.getChecksum());
+    }
+}
@@ -0,0 +1,105 @@
+package benchmark;
+
+import image.Image;
+import image.PrepareImage;
+import image.StreamingImage;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Measures how the time of streaming the brightness of an image grows with its height, on
+ * synthetic images of a fixed width, each twice as tall as the one before, as PNG and JPEG,
+ * which are decoded in a single pass, and BMP, which is read in strips. A time that doubles
+ * with the height is linear, one that quadruples is quadratic. Checks that the streamed PNG
+ * gives the brightness of PrepareImage.
+ * Usage: java benchmark.StreamingImageBenchmark [width] [height] [--quick]
+ */
+public class StreamingImageBenchmark {
+    private static final int DEFAULT_WIDTH = 1000;
+    private static final int DEFAULT_HEIGHT = 16000;
+    private static final int HEIGHTS = 3;
+    private static final int RESOLUTION = 128;
+    private static final String[] FORMATS = {"png", "jpg", "bmp"};
+    private static final String QUICK_OPTION = "--quick";
+    private static final int WARMUP_ITERATIONS = 1;
+    private static final int MEASURED_ITERATIONS = 3;
+    private static final long ITERATION_NANOS = 1_000_000_000L;
+    private static final long QUICK_ITERATION_NANOS = 100_000_000L;
+
+    private static Map<String, Object> params(String format, int height) {
+        Map<String, Object> params = new LinkedHashMap<>();
+        params.put("format", format);
+        params.put("height", height);
+        return params;
+    }
+
+    private static Path write(Image image, Path dir, String format) throws IOException {
+        BufferedImage buffered = new BufferedImage(image.getWidth(), image.getHeight(),
+                BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < image.getHeight(); y++) {
+            for (int x = 0; x < image.getWidth(); x++) {
+                buffered.setRGB(x, y, image.getRgb(x, y));
+            }
+        }
+        Path path = dir.resolve(image.getHeight() + "." + format);
+        ImageIO.write(buffered, format, path.toFile());
+        return path;
+    }
+
+    private static List<double[]> stream(Path path) {
+        List<double[]> rows = new ArrayList<>();
+        try (StreamingImage image = new StreamingImage(path.toString())) {
+            image.forEachBrightnessRow(RESOLUTION, 1, rows::add);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return rows;
+    }
+
+    public static void main(String[] args) throws IOException {
+        boolean quick = args.length > 0 && args[args.length - 1].equals(QUICK_OPTION);
+        int positional = quick ? args.length - 1 : args.length;
+        int width = positional > 0 ? Integer.parseInt(args[0]) : DEFAULT_WIDTH;
+        int height = positional > 1 ? Integer.parseInt(args[1]) : DEFAULT_HEIGHT;
+        BenchmarkRunner runner = quick ? new BenchmarkRunner(1, 2, QUICK_ITERATION_NANOS) :
+                new BenchmarkRunner(WARMUP_ITERATIONS, MEASURED_ITERATIONS, ITERATION_NANOS);
+        Path dir = Files.createTempDirectory("streaming-image-benchmark");
+
+        System.out.printf("width %d, resolution %d%n", width, RESOLUTION);
+        boolean identical = true;
+        for (String format : FORMATS) {
+            double previousNanos = 0;
+            for (int i = HEIGHTS - 1; i >= 0; i--) {
+                int imageHeight = height >> i;
+                Image image = SyntheticImages.gradient(width, imageHeight);
+                Path path = write(image, dir, format);
+                BenchmarkRunner.Measurement measurement = runner.run("stream", params(format, imageHeight),
+                        () -> stream(path).size());
+                System.out.println(measurement.toText());
+                if (previousNanos > 0) {
+                    System.out.printf("%s x%.2f for twice the height%n", format,
+                            measurement.meanNanos() / previousNanos);
+                }
+                previousNanos = measurement.meanNanos();
+                if (format.equals("png") && i == 0) {
+                    identical = Arrays.deepEquals(stream(path).toArray(new double[0][]),
+                            new PrepareImage(image).getImageBrightness(RESOLUTION));
+                }
+                Files.delete(path);
+            }
+        }
+        System.out.println("identical " + identical);
+        System.out.println("checksum " + runner.getChecksum());
+        Files.delete(dir);
+    }
+}
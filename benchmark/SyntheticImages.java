@@ -0,0 +1,56 @@
+package benchmark;
+
+import image.Image;
+
+import java.util.Random;
+
+/**
+ * Generates images for the benchmarks, so they run without any image files.
+ * The same arguments always give the same image.
+ * Public for the JMH benchmark module.
+ */
+public final class SyntheticImages {
+
+    private SyntheticImages() {}
+
+    /**
+     * Creates an image of random colors.
+     * @param width The width of the image.
+     * @param height The height of the image.
+     * @return The image.
+     */
+    public static Image noise(int width, int height) {
+        Random random = new Random(width * 31L + height);
+        int[] pixels = new int[width * height];
+        for (int i = 0; i < pixels.length; i++) {
+            pixels[i] = 0xFF000000 | random.nextInt(0x1000000);
+        }
+        return new Image(pixels, width, height);
+    }
+
+    /**
+     * Creates an image of a diagonal gray gradient with some colored noise, closer to a photo
+     * than pure noise: neighbouring cells differ, and every brightness occurs.
+     * @param width The width of the image.
+     * @param height The height of the image.
+     * @return The image.
+     */
+    public static Image gradient(int width, int height) {
+        Random random = new Random(width * 31L + height);
+        int[] pixels = new int[width * height];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int gray = (int) (255L * (x + y) / (width + height));
+                int red = clamp(gray + random.nextInt(32) - 16);
+                int green = clamp(gray + random.nextInt(32) - 16);
+                int blue = clamp(gray + random.nextInt(32) - 16);
+                pixels[y * width + x] = 0xFF000000 | (red << 16) | (green << 8) | blue;
+            }
+        }
+        return new Image(pixels, width, height);
+    }
+
+    private static int clamp(int channel) {
+        return Math.max(0, Math.min(255, channel));
+    }
+}
@@ -0,0 +1,103 @@
+package benchmark;
+
+import image.ColoredCells;
+import image.GrayKernel;
+import image.Image;
+import image.PrepareImage;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Compares the scalar gray kernel with the preferred one, the vector kernel when the JVM runs
+ * with --add-modules jdk.incubator.vector, on a large synthetic image: the gray codes of the rows
+ * alone and added into columns, building the summed-area table, and the colored cells.
+ * Checks that both kernels give identical brightness and colors.
+ * Usage: java --add-modules jdk.incubator.vector benchmark.VectorKernelBenchmark [width] [height] [--quick]
+ */
+public class VectorKernelBenchmark {
+    private static final int DEFAULT_WIDTH = 6000;
+    private static final int DEFAULT_HEIGHT = 4000;
+    private static final int RESOLUTION = 256;
+    private static final String QUICK_OPTION = "--quick";
+    private static final int WARMUP_ITERATIONS = 3;
+    private static final int MEASURED_ITERATIONS = 5;
+    private static final long ITERATION_NANOS = 1_000_000_000L;
+    private static final long QUICK_ITERATION_NANOS = 100_000_000L;
+
+    private static Map<String, Object> params(GrayKernel kernel) {
+        Map<String, Object> params = new LinkedHashMap<>();
+        params.put("kernel", kernel.name());
+        return params;
+    }
+
+    public static void main(String[] args) {
+        boolean quick = args.length > 0 && args[args.length - 1].equals(QUICK_OPTION);
+        int positional = quick ? args.length - 1 : args.length;
+        int width = positional > 0 ? Integer.parseInt(args[0]) : DEFAULT_WIDTH;
+        int height = positional > 1 ? Integer.parseInt(args[1]) : DEFAULT_HEIGHT;
+        BenchmarkRunner runner = quick ? new BenchmarkRunner(1, 2, QUICK_ITERATION_NANOS) :
+                new BenchmarkRunner(WARMUP_ITERATIONS, MEASURED_ITERATIONS, ITERATION_NANOS);
+        Image image = SyntheticImages.noise(width, height);
+        int[] pixels = new int[width * height];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                pixels[y * width + x] = image.getRgb(x, y);
+            }
+        }
+
+        GrayKernel scalar = GrayKernel.scalar();
+        GrayKernel preferred = GrayKernel.get();
+        System.out.printf("image %dx%d, resolution %d, preferred kernel %s%n",
+                width, height, RESOLUTION, preferred.name());
+        if (preferred == scalar) {
+            System.out.println("the vector kernel is not available, run with --add-modules jdk.incubator.vector");
+        }
+        Map<String, double[]> means = new LinkedHashMap<>();
+        for (GrayKernel kernel : preferred == scalar ? new GrayKernel[]{scalar} : new GrayKernel[]{scalar, preferred}) {
+            int[] gray = new int[width];
+            BenchmarkRunner.Measurement codes = runner.run("gray_codes", params(kernel), () -> {
+                for (int y = 0; y < height; y++) {
+                    kernel.grayCodes(pixels, y * width, width, gray);
+                }
+                return gray[0];
+            });
+            int[] columns = new int[width];
+            BenchmarkRunner.Measurement sums = runner.run("add_gray_codes", params(kernel), () -> {
+                for (int y = 0; y < height; y += GrayKernel.MAX_ROWS) {
+                    Arrays.fill(columns, 0);
+                    for (int line = y; line < Math.min(height, y + GrayKernel.MAX_ROWS); line++) {
+                        kernel.addGrayCodes(pixels, line * width, width, columns);
+                    }
+                }
+                return columns[0];
+            });
+            BenchmarkRunner.Measurement prepare = runner.run("prepare", params(kernel),
+                    () -> new PrepareImage(image, 1, true, kernel).getOriginalImage().getWidth());
+            PrepareImage prepared = new PrepareImage(image, 1, true, kernel);
+            BenchmarkRunner.Measurement colored = runner.run("colored_cells", params(kernel),
+                    () -> prepared.getColoredCells(RESOLUTION).colors()[0][0]);
+            for (BenchmarkRunner.Measurement measurement : new BenchmarkRunner.Measurement[]{codes, sums, prepare, colored}) {
+                System.out.println(measurement.toText());
+                means.computeIfAbsent(measurement.benchmark(), name -> new double[2])
+                        [kernel == scalar ? 0 : 1] = measurement.meanNanos();
+            }
+        }
+        if (preferred != scalar) {
+            for (Map.Entry<String, double[]> entry : means.entrySet()) {
+                System.out.printf("%-20s speedup %.2fx%n", entry.getKey(), entry.getValue()[0] / entry.getValue()[1]);
+            }
+        }
+
+        PrepareImage expected = new PrepareImage(image, 1, true, scalar);
+        PrepareImage actual = new PrepareImage(image, 1, true, preferred);
+        ColoredCells expectedCells = expected.getColoredCells(RESOLUTION);
+        ColoredCells actualCells = actual.getColoredCells(RESOLUTION);
+        System.out.println("identical " + (Arrays.deepEquals(expected.getImageBrightness(RESOLUTION),
+                actual.getImageBrightness(RESOLUTION)) &&
+                Arrays.deepEquals(expectedCells.brightness(), actualCells.brightness()) &&
+                Arrays.deepEquals(expectedCells.colors(), actualCells.colors())));
+        System.out.println("checksum " + runner.getChecksum());
+    }
+}
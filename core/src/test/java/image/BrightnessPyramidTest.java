@@ -0,0 +1,96 @@
+package image;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+/**
+ * Checks that the brightness of the power of 2 layout, whether looked up in the summed-area table
+ * or reduced from a finer level of the pyramid, is bit-identical to summing the pixels of each cell
+ * directly, whatever the order the resolutions are asked for in.
+ */
+class BrightnessPyramidTest {
+    private static final int[][] SIZES = {{301, 187}, {64, 64}, {1000, 13}, {17, 530}, {1, 1}};
+
+    /**
+     * Sums the gray codes of the pixels of every cell one by one, counting the padding as white.
+     */
+    private static double[][] directBrightness(Image image, CellLayout layout) {
+        int pixelDim = layout.pixelDim();
+        double[][] brightness = new double[layout.rows()][layout.columns()];
+        for (int row = 0; row < layout.rows(); row++) {
+            for (int column = 0; column < layout.columns(); column++) {
+                long sum = 0;
+                for (int y = row * pixelDim - layout.topBuffer(); y < (row + 1) * pixelDim - layout.topBuffer(); y++) {
+                    for (int x = column * pixelDim - layout.sideBuffer();
+                         x < (column + 1) * pixelDim - layout.sideBuffer(); x++) {
+                        boolean inside = x >= 0 && x < image.getWidth() && y >= 0 && y < image.getHeight();
+                        sum += PrepareImage.grayCode(inside ? image.getRgb(x, y) : PrepareImage.WHITE);
+                    }
+                }
+                brightness[row][column] = PrepareImage.cellBrightness(sum, (long) pixelDim * pixelDim);
+            }
+        }
+        return brightness;
+    }
+
+    private static int[] resolutions(int width) {
+        int count = Integer.numberOfTrailingZeros(CellLayout.bufferedSize(width)) + 1;
+        int[] resolutions = new int[count];
+        for (int i = 0; i < count; i++) {
+            resolutions[i] = 1 << i;
+        }
+        return resolutions;
+    }
+
+    @Test
+    void coarseningLevelsMatchDirectSums() {
+        for (int[] size : SIZES) {
+            Image image = ParallelPrepareTest.noise(size[0], size[1], size[0] * 17L + size[1]);
+            PrepareImage prepared = new PrepareImage(image, 1, true);
+            int[] resolutions = resolutions(size[0]);
+            // the finest level first, so every coarser level is reduced from it
+            for (int i = resolutions.length - 1; i >= 0; i--) {
+                CellLayout layout = CellLayout.powerOfTwo(size[0], size[1], resolutions[i]);
+                assertArrayEquals(directBrightness(image, layout), prepared.getImageBrightness(resolutions[i]),
+                        size[0] + "x" + size[1] + " at " + resolutions[i]);
+            }
+        }
+    }
+
+    @Test
+    void refiningLevelsMatchDirectSums() {
+        for (int[] size : SIZES) {
+            Image image = ParallelPrepareTest.noise(size[0], size[1], size[0] * 17L + size[1]);
+            PrepareImage prepared = new PrepareImage(image, 1, true);
+            for (int resolution : resolutions(size[0])) {
+                CellLayout layout = CellLayout.powerOfTwo(size[0], size[1], resolution);
+                assertArrayEquals(directBrightness(image, layout), prepared.getImageBrightness(resolution),
+                        size[0] + "x" + size[1] + " at " + resolution);
+            }
+        }
+    }
+
+    @Test
+    void anyOrderMatchesAFreshImage() {
+        Image image = ParallelPrepareTest.noise(301, 187, 5);
+        PrepareImage prepared = new PrepareImage(image, 3, true);
+        for (int resolution : new int[]{32, 4, 128, 64, 8, 512, 1, 256, 16, 2}) {
+            assertArrayEquals(new PrepareImage(image, 1, true).getImageBrightness(resolution),
+                    prepared.getImageBrightness(resolution), "at " + resolution);
+        }
+    }
+
+    @Test
+    void minimalPaddingMatchesDirectSums() {
+        for (int[] size : SIZES) {
+            Image image = ParallelPrepareTest.noise(size[0], size[1], size[0] * 17L + size[1]);
+            PrepareImage prepared = new PrepareImage(image, 1, false);
+            for (int resolution = 1; resolution <= size[0]; resolution += 1 + resolution / 3) {
+                CellLayout layout = CellLayout.minimal(size[0], size[1], resolution);
+                assertArrayEquals(directBrightness(image, layout), prepared.getImageBrightness(resolution),
+                        size[0] + "x" + size[1] + " at " + resolution);
+            }
+        }
+    }
+}
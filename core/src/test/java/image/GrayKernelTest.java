@@ -0,0 +1,87 @@
+package image;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Checks that the vector kernel gives bit-identical results to the scalar kernel, on spans of
+ * every length around the lane counts and at unaligned offsets, and through PrepareImage.
+ * Skipped when the vector kernel is not compiled or the jdk.incubator.vector module is missing.
+ */
+class GrayKernelTest {
+    private static final int MAX_LENGTH = 200;
+    private static final int MAX_OFFSET = 17;
+    private static final int[] EDGE_COLORS = {0xFF000000, 0xFFFFFFFF, 0xFFFF0000, 0xFF00FF00, 0xFF0000FF, 0x00FFFFFF};
+
+    private static GrayKernel vector() {
+        GrayKernel kernel = GrayKernel.get();
+        assumeTrue(kernel != GrayKernel.scalar(), "the vector kernel is not available");
+        return kernel;
+    }
+
+    private static int[] pixels(int length, long seed) {
+        Random random = new Random(seed);
+        int[] pixels = new int[length];
+        for (int i = 0; i < length; i++) {
+            pixels[i] = i < EDGE_COLORS.length ? EDGE_COLORS[i] : random.nextInt();
+        }
+        return pixels;
+    }
+
+    @Test
+    void grayCodesAreIdentical() {
+        GrayKernel vector = vector();
+        int[] pixels = pixels(MAX_OFFSET + MAX_LENGTH, 1);
+        for (int from = 0; from < MAX_OFFSET; from++) {
+            for (int length = 0; length <= MAX_LENGTH; length++) {
+                int[] expected = new int[length];
+                int[] actual = new int[length];
+                GrayKernel.scalar().grayCodes(pixels, from, length, expected);
+                vector.grayCodes(pixels, from, length, actual);
+                assertArrayEquals(expected, actual, "from " + from + " length " + length);
+            }
+        }
+    }
+
+    @Test
+    void addedGrayCodesAndChannelsAreIdentical() {
+        GrayKernel vector = vector();
+        int[] pixels = pixels(MAX_OFFSET + MAX_LENGTH, 2);
+        for (int from = 0; from < MAX_OFFSET; from++) {
+            for (int length = 0; length <= MAX_LENGTH; length++) {
+                int[][] expected = new int[5][length];
+                int[][] actual = new int[5][length];
+                // several rows, so the sums start from nonzero columns
+                for (int row = 0; row < 3; row++) {
+                    GrayKernel.scalar().addGrayCodes(pixels, from, length, expected[0]);
+                    vector.addGrayCodes(pixels, from, length, actual[0]);
+                    GrayKernel.scalar().addChannels(pixels, from, length,
+                            expected[1], expected[2], expected[3], expected[4]);
+                    vector.addChannels(pixels, from, length, actual[1], actual[2], actual[3], actual[4]);
+                }
+                assertArrayEquals(expected, actual, "from " + from + " length " + length);
+            }
+        }
+    }
+
+    @Test
+    void preparedImagesAreIdentical() {
+        GrayKernel vector = vector();
+        Image image = ParallelPrepareTest.noise(333, 211, 3);
+        for (boolean powerOfTwo : new boolean[]{true, false}) {
+            PrepareImage expected = new PrepareImage(image, 1, powerOfTwo, GrayKernel.scalar());
+            PrepareImage actual = new PrepareImage(image, 1, powerOfTwo, vector);
+            for (int resolution : new int[]{1, 4, 32, 256}) {
+                assertArrayEquals(expected.getImageBrightness(resolution), actual.getImageBrightness(resolution));
+                ColoredCells expectedCells = expected.getColoredCells(resolution);
+                ColoredCells actualCells = actual.getColoredCells(resolution);
+                assertArrayEquals(expectedCells.brightness(), actualCells.brightness());
+                assertArrayEquals(expectedCells.colors(), actualCells.colors());
+            }
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package image;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+/**
+ * Checks that preparing and dithering an image in parallel bands gives bit-identical results to
+ * doing it on a single thread, for both paddings and images whose sizes do not split evenly.
+ */
+class ParallelPrepareTest {
+    private static final int[] PARALLELISMS = {2, 3, 8};
+    private static final int[][] SIZES = {{301, 187}, {64, 64}, {1000, 13}, {17, 530}};
+    private static final int MASK_SIDE = 8;
+    private static final double MIN_CONTRAST = 0.1;
+    private static final int LEVELS = 10;
+
+    static Image noise(int width, int height, long seed) {
+        Random random = new Random(seed);
+        int[] pixels = new int[width * height];
+        for (int i = 0; i < pixels.length; i++) {
+            pixels[i] = 0xFF000000 | random.nextInt(0x1000000);
+        }
+        return new Image(pixels, width, height);
+    }
+
+    /**
+     * @return the resolutions to check for an image width, every one for minimal padding and
+     * every power of 2 for power of 2 padding.
+     */
+    private static int[] resolutions(int width, boolean powerOfTwoPadding) {
+        if (powerOfTwoPadding) {
+            int count = Integer.numberOfTrailingZeros(CellLayout.bufferedSize(width)) + 1;
+            int[] resolutions = new int[count];
+            for (int i = 0; i < count; i++) {
+                resolutions[i] = 1 << i;
+            }
+            return resolutions;
+        }
+        return new int[]{1, 2, 3, 7, width / 5 + 1, width / 2, width};
+    }
+
+    @Test
+    void parallelBrightnessIsIdenticalToSequential() {
+        for (int[] size : SIZES) {
+            Image image = noise(size[0], size[1], size[0] * 31L + size[1]);
+            for (boolean powerOfTwo : new boolean[]{true, false}) {
+                PrepareImage sequential = new PrepareImage(image, 1, powerOfTwo);
+                for (int parallelism : PARALLELISMS) {
+                    PrepareImage parallel = new PrepareImage(image, parallelism, powerOfTwo);
+                    for (int resolution : resolutions(size[0], powerOfTwo)) {
+                        assertArrayEquals(sequential.getImageBrightness(resolution),
+                                parallel.getImageBrightness(resolution));
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    void parallelColorsAndMasksAreIdenticalToSequential() {
+        for (int[] size : SIZES) {
+            Image image = noise(size[0], size[1], size[0] * 31L + size[1]);
+            for (boolean powerOfTwo : new boolean[]{true, false}) {
+                PrepareImage sequential = new PrepareImage(image, 1, powerOfTwo);
+                for (int parallelism : PARALLELISMS) {
+                    PrepareImage parallel = new PrepareImage(image, parallelism, powerOfTwo);
+                    for (int resolution : resolutions(size[0], powerOfTwo)) {
+                        ColoredCells expected = sequential.getColoredCells(resolution);
+                        ColoredCells actual = parallel.getColoredCells(resolution);
+                        assertArrayEquals(expected.brightness(), actual.brightness());
+                        assertArrayEquals(expected.colors(), actual.colors());
+                        assertArrayEquals(sequential.getCellMasks(resolution, MASK_SIDE, MIN_CONTRAST),
+                                parallel.getCellMasks(resolution, MASK_SIDE, MIN_CONTRAST));
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    void parallelDitheringIsIdenticalToSequential() {
+        // large enough for the error diffusion to run as a wavefront of rows
+        double[][] brightness = new PrepareImage(noise(1200, 900, 7), 1, false).getImageBrightness(400);
+        for (String method : new String[]{Dithering.FLOYD_STEINBERG, Dithering.ATKINSON, Dithering.BAYER}) {
+            double[][] expected = copy(brightness);
+            new Dithering(method, 1).dither(expected, ParallelPrepareTest::quantize, LEVELS);
+            for (int parallelism : PARALLELISMS) {
+                double[][] actual = copy(brightness);
+                new Dithering(method, parallelism).dither(actual, ParallelPrepareTest::quantize, LEVELS);
+                assertArrayEquals(expected, actual, method + " with " + parallelism + " threads");
+            }
+        }
+    }
+
+    /**
+     * @return the brightness rounded to the nearest of LEVELS levels spread over [0, 1].
+     */
+    private static double quantize(double brightness) {
+        return Math.round(Math.max(0, Math.min(1, brightness)) * (LEVELS - 1)) / (double) (LEVELS - 1);
+    }
+
+    private static double[][] copy(double[][] matrix) {
+        double[][] copy = new double[matrix.length][];
+        for (int y = 0; y < matrix.length; y++) {
+            copy[y] = matrix[y].clone();
+        }
+        return copy;
+    }
+}
@@ -0,0 +1,128 @@
+package image_char_matching;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Checks that matching a brightness through the lookup table of a snapshot gives the same char as
+ * the original rounding of SubImgCharMatcher, over its sorted map of normalized brightness, for
+ * every type of rounding. The brightnesses checked are every normalized brightness and its
+ * neighbouring doubles, the midpoints between them, every bucket edge of the lookup table and its
+ * neighbouring doubles, and random values.
+ */
+class CharMatcherSnapshotTest {
+    private static final int LOOKUP_BUCKETS = 4096;
+    private static final String[] ROUNDS =
+            {SubImgCharMatcher.ROUND_UP, SubImgCharMatcher.ROUND_DOWN, SubImgCharMatcher.ROUND_ABS};
+    private static final int SETS = 50;
+    private static final int RANDOM_QUERIES = 20000;
+
+    /**
+     * The rounding of the original SubImgCharMatcher, over a sorted map of the normalized brightness.
+     */
+    private static char baselineChar(TreeMap<Double, Character> normalized, String typeOfRound,
+                                     double brightness) {
+        if (normalized.containsKey(brightness)) {
+            return normalized.get(brightness);
+        }
+        double lowerEstimation = normalized.tailMap(brightness).firstKey();
+        double upperEstimation = normalized.headMap(brightness).isEmpty() ? normalized.firstKey() :
+                normalized.headMap(brightness).lastKey();
+        double rounded;
+        switch (typeOfRound) {
+            case SubImgCharMatcher.ROUND_UP:
+                rounded = upperEstimation;
+                break;
+            case SubImgCharMatcher.ROUND_DOWN:
+                rounded = lowerEstimation;
+                break;
+            default:
+                double upperDelta = Math.abs(brightness - upperEstimation);
+                double lowerDelta = Math.abs(brightness - lowerEstimation);
+                rounded = upperDelta < lowerDelta ? upperEstimation : lowerEstimation;
+                break;
+        }
+        return normalized.get(rounded);
+    }
+
+    /**
+     * @return normalized brightnesses from 0 to 1, some of them on or next to bucket edges.
+     */
+    private static double[] normalizedSet(Random random) {
+        TreeSet<Double> values = new TreeSet<>();
+        values.add(0.0);
+        values.add(1.0);
+        int count = 1 + random.nextInt(94);
+        while (values.size() < count + 2) {
+            double value = random.nextDouble();
+            switch (random.nextInt(4)) {
+                case 0 -> value = Math.floor(value * LOOKUP_BUCKETS) / LOOKUP_BUCKETS;
+                case 1 -> value = Math.nextUp(Math.floor(value * LOOKUP_BUCKETS) / LOOKUP_BUCKETS);
+                case 2 -> value = Math.nextDown(Math.ceil(value * LOOKUP_BUCKETS) / LOOKUP_BUCKETS);
+                default -> { }
+            }
+            values.add(value);
+        }
+        double[] sorted = new double[values.size()];
+        int i = 0;
+        for (double value : values) {
+            sorted[i++] = value;
+        }
+        return sorted;
+    }
+
+    private static List<Double> queries(double[] sorted, Random random) {
+        List<Double> queries = new ArrayList<>();
+        for (int i = 0; i < sorted.length; i++) {
+            queries.add(sorted[i]);
+            queries.add(Math.nextUp(sorted[i]));
+            queries.add(Math.nextDown(sorted[i]));
+            if (i + 1 < sorted.length) {
+                double middle = (sorted[i] + sorted[i + 1]) / 2;
+                queries.add(middle);
+                queries.add(Math.nextUp(middle));
+                queries.add(Math.nextDown(middle));
+            }
+        }
+        for (int i = 0; i <= LOOKUP_BUCKETS; i++) {
+            double edge = (double) i / LOOKUP_BUCKETS;
+            queries.add(edge);
+            queries.add(Math.nextUp(edge));
+            queries.add(Math.nextDown(edge));
+        }
+        for (int i = 0; i < RANDOM_QUERIES; i++) {
+            queries.add(random.nextDouble());
+        }
+        queries.removeIf(query -> query < 0 || query > 1);
+        return queries;
+    }
+
+    @Test
+    void lookupTableMatchesBaselineRounding() {
+        Random random = new Random(42);
+        for (int set = 0; set < SETS; set++) {
+            double[] sorted = normalizedSet(random);
+            char[] chars = new char[sorted.length];
+            TreeMap<Double, Character> normalized = new TreeMap<>();
+            for (int i = 0; i < sorted.length; i++) {
+                chars[i] = (char) (SubImgCharMatcher.LOWER_ASCII + i);
+                normalized.put(sorted[i], chars[i]);
+            }
+            List<Double> queries = queries(sorted, random);
+            for (String round : ROUNDS) {
+                CharMatcherSnapshot snapshot = new CharMatcherSnapshot(sorted, chars, round, chars);
+                for (double query : queries) {
+                    assertEquals(baselineChar(normalized, round, query), snapshot.getCharByImageBrightness(query),
+                            round + " rounding of " + query + " over " + sorted.length + " chars");
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package image;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Splits a range of indices (rows or columns) into bands and runs an action on each band,
+ * as fork-join tasks when a pool is given and on the calling thread otherwise.
+ * The bands never overlap, so actions writing only inside their band need no locking.
+ * The pools are shared by the whole process, one per parallelism, so preparing many images
+ * never starts more threads than the parallelism levels asked for.
+ */
+class Bands extends RecursiveAction {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * The smallest band that is still split between two tasks.
+     */
+    private static final int MIN_BAND = 16;
+
+    /**
+     * An action on the indices [from, to).
+     */
+    @FunctionalInterface
+    interface BandAction {
+        void run(int from, int to);
+    }
+
+    /**
+     * The shared pools, keyed by their parallelism. Their threads are daemons, so they are never shut down.
+     */
+    private static final Map<Integer, ForkJoinPool> POOLS = new ConcurrentHashMap<>();
+
+    private final int from;
+    private final int to;
+    private final transient BandAction action;
+
+    private Bands(int from, int to, BandAction action) {
+        this.from = from;
+        this.to = to;
+        this.action = action;
+    }
+
+    /**
+     * Returns the shared pool of a parallelism, creating it on first use.
+     * @param parallelism The number of threads, at least 1.
+     * @return The pool, or null for a parallelism of 1, to run on the calling thread.
+     */
+    static ForkJoinPool pool(int parallelism) {
+        return parallelism == 1 ? null : POOLS.computeIfAbsent(parallelism, ForkJoinPool::new);
+    }
+
+    /**
+     * Runs the action over the indices [0, count).
+     * @param pool The pool to run the bands in, or null to run them all on the calling thread.
+     * @param count The number of indices.
+     * @param action The action to run on each band.
+     */
+    static void forEach(ForkJoinPool pool, int count, BandAction action) {
+        if (pool == null || count <= MIN_BAND) {
+            action.run(0, count);
+        } else {
+            pool.invoke(new Bands(0, count, action));
+        }
+    }
+
+    @Override
+    protected void compute() {
+        if (to - from <= MIN_BAND) {
+            action.run(from, to);
+            return;
+        }
+        int mid = (from + to) >>> 1;
+        invokeAll(new Bands(from, mid, action), new Bands(mid, to, action));
+    }
+}
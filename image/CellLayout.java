@@ -0,0 +1,67 @@
+package image;
+
+/**
+ * How the square cells of the ascii art are laid over an image: the image is centered in a
+ * white frame, the padded image, which is split into rows x columns cells of pixelDim pixels.
+ * The frame is never materialized, only its size and offsets are kept.
+ * @param pixelDim The side length of a cell, in pixels.
+ * @param columns The number of cells along the width.
+ * @param rows The number of cells along the height.
+ * @param sideBuffer The width of the white frame left of the image.
+ * @param topBuffer The height of the white frame above the image.
+ */
+record CellLayout(int pixelDim, int columns, int rows, int sideBuffer, int topBuffer) {
+
+    /**
+     * Lays out the cells over the image padded to the nearest powers of 2,
+     * so the resolution is expected to be a power of 2 too.
+     * @param width The width of the image.
+     * @param height The height of the image.
+     * @param resolution The number of cells along the width.
+     * @return The layout.
+     * @throws IllegalArgumentException If the resolution is not within [1, buffered width].
+     */
+    static CellLayout powerOfTwo(int width, int height, int resolution) throws IllegalArgumentException {
+        int buffW = bufferedSize(width);
+        int buffH = bufferedSize(height);
+        if (resolution < 1 || resolution > buffW) {
+            throw new IllegalArgumentException("resolution out of bounds.");
+        }
+        int pixelDim = buffW / resolution;
+        return new CellLayout(pixelDim, resolution, buffH / pixelDim,
+                (buffW - width) / 2, (buffH - height) / 2);
+    }
+
+    /**
+     * Lays out the cells over the image padded only up to a whole number of cells, for any
+     * resolution up to the width of the image.
+     * For images and resolutions that are powers of 2 this is the same as powerOfTwo.
+     * @param width The width of the image.
+     * @param height The height of the image.
+     * @param resolution The number of cells along the width.
+     * @return The layout.
+     * @throws IllegalArgumentException If the resolution is not within [1, width].
+     */
+    static CellLayout minimal(int width, int height, int resolution) throws IllegalArgumentException {
+        if (resolution < 1 || resolution > width) {
+            throw new IllegalArgumentException("resolution out of bounds.");
+        }
+        int pixelDim = (width + resolution - 1) / resolution;
+        int rows = (height + pixelDim - 1) / pixelDim;
+        return new CellLayout(pixelDim, resolution, rows,
+                (resolution * pixelDim - width) / 2, (rows * pixelDim - height) / 2);
+    }
+
+    /**
+     * Calculates the size (width or height) the image should be buffered to.
+     * @param size The width or height of the image.
+     * @return The size the image should be buffered to, the nearest power of 2.
+     */
+    static int bufferedSize(int size) {
+        int newSize = 2;
+        while (newSize < size) {
+            newSize *= 2;
+        }
+        return newSize;
+    }
+}
@@ -0,0 +1,8 @@
+package image;
+
+/**
+ * The brightness and the average color of each cell of an image, both arrays of rows.
+ * @param brightness The brightness of each cell, as in PrepareImage.getImageBrightness.
+ * @param colors The average color of each cell, in the default RGB color model.
+ */
+public record ColoredCells(double[][] brightness, int[][] colors) {}
@@ -0,0 +1,259 @@
+package image;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.function.DoubleUnaryOperator;
+
+/**
+ * Dithers a brightness matrix to the few brightness levels of a charset, so smooth gradients
+ * are not matched to bands of the same char. Each brightness is replaced in place by the level
+ * it is matched to, so matching the dithered matrix picks exactly the chars of the levels.
+ * Ordered dithering offsets each cell by a threshold of an 8x8 Bayer matrix and is computed in
+ * row bands, independently. Error diffusion, Floyd-Steinberg or Atkinson, adds the error of each
+ * cell to the cells after it: along its row through locals, and below it straight into the rows
+ * of the matrix, which needs no error buffer. A row only depends on the rows above it up to two
+ * columns to its right, so the rows run as a wavefront: each row is taken by the next free
+ * thread, and follows the row above it at least two columns behind, watching its progress.
+ * The wavefront adds the same errors in the same order as a single thread does, so every
+ * parallelism gives bit-identical results.
+ */
+public class Dithering {
+
+    /**
+     * No dithering.
+     */
+    public static final String NONE = "none";
+    /**
+     * Floyd-Steinberg error diffusion, all of the error to the next cell and the three below.
+     */
+    public static final String FLOYD_STEINBERG = "floyd-steinberg";
+    /**
+     * Atkinson error diffusion, 6/8 of the error to the next two cells, the three below and
+     * the one two rows below, for more contrast.
+     */
+    public static final String ATKINSON = "atkinson";
+    /**
+     * Ordered dithering with an 8x8 Bayer matrix.
+     */
+    public static final String BAYER = "bayer";
+
+    private static final int BAYER_SIDE = 8;
+    private static final double[][] BAYER_THRESHOLDS = buildBayerThresholds();
+    /**
+     * The number of columns a row follows the row above it by, the furthest an error reaches
+     * back, plus one.
+     */
+    private static final int LAG = 2;
+    /**
+     * The number of columns between updates of the progress of a row.
+     */
+    private static final int CHUNK = 64;
+    /**
+     * The smallest matrix diffused by more than one thread.
+     */
+    private static final int MIN_PARALLEL_CELLS = 1 << 16;
+    /**
+     * The number of busy waits on a row before yielding the thread instead.
+     */
+    private static final int SPINS = 1 << 10;
+
+    private final String method;
+    private final int parallelism;
+    /**
+     * The shared pool running the rows or bands in parallel, null when running sequentially.
+     */
+    private final ForkJoinPool pool;
+
+    /**
+     * Constructor for the Dithering class.
+     * Every parallelism gives bit-identical results. The threads come from the pool PrepareImage
+     * shares for the same parallelism, so a Dithering holds no threads of its own.
+     * @param method One of the method constants.
+     * @param parallelism The number of threads to dither with, 1 for sequential.
+     * @throws IllegalArgumentException if there is no such method, or the parallelism is not positive.
+     */
+    public Dithering(String method, int parallelism) throws IllegalArgumentException {
+        if (!method.equals(NONE) && !method.equals(FLOYD_STEINBERG) && !method.equals(ATKINSON) &&
+                !method.equals(BAYER)) {
+            throw new IllegalArgumentException("no such dithering.");
+        }
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("parallelism must be positive.");
+        }
+        this.method = method;
+        this.parallelism = parallelism;
+        this.pool = method.equals(NONE) ? null : Bands.pool(parallelism);
+    }
+
+    /**
+     * @return The dithering method, one of the method constants.
+     */
+    public String getMethod() {
+        return method;
+    }
+
+    /**
+     * Builds the thresholds of the Bayer matrix, each index m of the recursive matrix as
+     * (m + 0.5) / 64 - 0.5, so they are spread evenly over (-0.5, 0.5).
+     */
+    private static double[][] buildBayerThresholds() {
+        int[][] matrix = {{0}};
+        for (int side = 1; side < BAYER_SIDE; side *= 2) {
+            int[][] next = new int[side * 2][side * 2];
+            for (int y = 0; y < side; y++) {
+                for (int x = 0; x < side; x++) {
+                    int m = matrix[y][x] * 4;
+                    next[y][x] = m;
+                    next[y][x + side] = m + 2;
+                    next[y + side][x] = m + 3;
+                    next[y + side][x + side] = m + 1;
+                }
+            }
+            matrix = next;
+        }
+        double cells = BAYER_SIDE * BAYER_SIDE;
+        double[][] thresholds = new double[BAYER_SIDE][BAYER_SIDE];
+        for (int y = 0; y < BAYER_SIDE; y++) {
+            for (int x = 0; x < BAYER_SIDE; x++) {
+                thresholds[y][x] = (matrix[y][x] + 0.5) / cells - 0.5;
+            }
+        }
+        return thresholds;
+    }
+
+    /**
+     * Dithers a brightness matrix in place.
+     * @param brightness The brightness matrix, each brightness replaced by the level it is matched to.
+     * @param quantizer Returns the level a brightness is matched to.
+     * @param levels The number of levels, spread over [0, 1], which sets the spread of the Bayer thresholds.
+     */
+    public void dither(double[][] brightness, DoubleUnaryOperator quantizer, int levels) {
+        switch (method) {
+            case BAYER -> ordered(brightness, quantizer, levels > 1 ? 1.0 / (levels - 1) : 0);
+            case FLOYD_STEINBERG, ATKINSON -> diffuse(brightness, quantizer, method.equals(ATKINSON));
+            default -> { }
+        }
+    }
+
+    /**
+     * Offsets every cell by its Bayer threshold times the spread of the levels, and quantizes it.
+     */
+    private void ordered(double[][] brightness, DoubleUnaryOperator quantizer, double spread) {
+        Bands.forEach(pool, brightness.length, (from, to) -> {
+            for (int y = from; y < to; y++) {
+                double[] row = brightness[y];
+                double[] thresholds = BAYER_THRESHOLDS[y % BAYER_SIDE];
+                for (int x = 0; x < row.length; x++) {
+                    row[x] = quantizer.applyAsDouble(row[x] + thresholds[x % BAYER_SIDE] * spread);
+                }
+            }
+        });
+    }
+
+    /**
+     * Diffuses the error of every cell, on the calling thread for small matrices, and otherwise
+     * as a wavefront of rows over the pool.
+     */
+    private void diffuse(double[][] brightness, DoubleUnaryOperator quantizer, boolean atkinson) {
+        int rows = brightness.length;
+        // a row waiting for a row that is not running only wastes its thread, so the rows never
+        // take more threads than there are processors
+        int workers = Math.min(Math.min(parallelism, Runtime.getRuntime().availableProcessors()), rows);
+        if (pool == null || workers == 1 || (long) rows * brightness[0].length < MIN_PARALLEL_CELLS) {
+            for (int y = 0; y < rows; y++) {
+                diffuseRow(brightness, y, quantizer, atkinson, null);
+            }
+            return;
+        }
+        AtomicIntegerArray progress = new AtomicIntegerArray(rows);
+        AtomicInteger nextRow = new AtomicInteger();
+        List<ForkJoinTask<?>> tasks = new ArrayList<>();
+        for (int i = 0; i < workers; i++) {
+            tasks.add(pool.submit(() -> {
+                // rows are taken in order, so the row above a taken row is always being worked on
+                for (int y = nextRow.getAndIncrement(); y < rows; y = nextRow.getAndIncrement()) {
+                    diffuseRow(brightness, y, quantizer, atkinson, progress);
+                }
+            }));
+        }
+        for (ForkJoinTask<?> task : tasks) {
+            task.join();
+        }
+    }
+
+    /**
+     * Quantizes a row, carrying the error to the cells right of each cell in locals, and adding
+     * it to the cells below straight in the matrix.
+     * @param progress The number of columns done in each row, to follow the row above and to be
+     *                 followed by the row below, or null when the rows run one after the other.
+     */
+    private static void diffuseRow(double[][] brightness, int y, DoubleUnaryOperator quantizer,
+                                   boolean atkinson, AtomicIntegerArray progress) {
+        double[] row = brightness[y];
+        double[] below = y + 1 < brightness.length ? brightness[y + 1] : null;
+        double[] belowTwice = atkinson && y + 2 < brightness.length ? brightness[y + 2] : null;
+        int width = row.length;
+        double next = 0;
+        double afterNext = 0;
+        for (int from = 0; from < width; from += CHUNK) {
+            int to = Math.min(width, from + CHUNK);
+            if (progress != null && y > 0) {
+                await(progress, y - 1, Math.min(width, to - 1 + LAG));
+            }
+            for (int x = from; x < to; x++) {
+                double value = row[x] + next;
+                double level = quantizer.applyAsDouble(value);
+                row[x] = level;
+                double error = value - level;
+                if (atkinson) {
+                    double share = error / 8;
+                    next = afterNext + share;
+                    afterNext = share;
+                    if (below != null) {
+                        if (x > 0) {
+                            below[x - 1] += share;
+                        }
+                        below[x] += share;
+                        if (x + 1 < width) {
+                            below[x + 1] += share;
+                        }
+                    }
+                    if (belowTwice != null) {
+                        belowTwice[x] += share;
+                    }
+                } else {
+                    next = error * 7 / 16;
+                    if (below != null) {
+                        if (x > 0) {
+                            below[x - 1] += error * 3 / 16;
+                        }
+                        below[x] += error * 5 / 16;
+                        if (x + 1 < width) {
+                            below[x + 1] += error / 16;
+                        }
+                    }
+                }
+            }
+            if (progress != null) {
+                progress.set(y, to);
+            }
+        }
+    }
+
+    /**
+     * Waits until a row has done the given number of columns.
+     */
+    private static void await(AtomicIntegerArray progress, int row, int columns) {
+        for (int spins = 0; progress.get(row) < columns; spins++) {
+            if (spins < SPINS) {
+                Thread.onSpinWait();
+            } else {
+                Thread.yield();
+            }
+        }
+    }
+}
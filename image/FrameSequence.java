@@ -0,0 +1,213 @@
+package image;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.metadata.IIOMetadata;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.image.BufferedImage;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+
+/**
+ * A sequence of frames, read one at a time: either a directory of numbered image files,
+ * ordered by the number in their names, or a single file holding several images,
+ * such as an animated GIF.
+ * The images of a multi-image file are drawn in turn onto a canvas the size of the first
+ * image (or of the GIF logical screen), so partial GIF frames become whole frames.
+ */
+public class FrameSequence implements Closeable {
+    private static final String[] IMAGE_SUFFIXES = {".png", ".jpg", ".jpeg", ".gif", ".bmp",
+            ".pgm", ".ppm", ".pam", MappedRaster.RGB_SUFFIX, MappedRaster.GRAY_SUFFIX};
+    private static final String GIF_METADATA = "javax_imageio_gif_image_1.0";
+    private static final String GIF_STREAM_METADATA = "javax_imageio_gif_stream_1.0";
+    private static final String RESTORE_TO_BACKGROUND = "restoreToBackgroundColor";
+    private static final int ALPHA_SHIFT = 24;
+
+    private final List<File> files;
+    private final ImageInputStream input;
+    private final ImageReader reader;
+    private final int frameCount;
+    private int[] canvas;
+    private int canvasWidth;
+    private int canvasHeight;
+    private int next = 0;
+
+    /**
+     * Constructor for the FrameSequence class. Reads only the names of the files,
+     * or the header of a multi-image file.
+     * @param path A directory of numbered frames, or an image file.
+     * @throws IOException If the path is not found, holds no frames or its format is not supported.
+     */
+    public FrameSequence(String path) throws IOException {
+        File file = new File(path);
+        if (file.isDirectory()) {
+            File[] frames = file.listFiles(FrameSequence::isImageFile);
+            if (frames == null || frames.length == 0) {
+                throw new IOException("No frames in directory!");
+            }
+            Arrays.sort(frames, Comparator.comparingLong(FrameSequence::frameNumber)
+                    .thenComparing(File::getName));
+            this.files = List.of(frames);
+            this.input = null;
+            this.reader = null;
+            this.frameCount = frames.length;
+            return;
+        }
+        this.files = List.of();
+        this.input = file.isFile() ? ImageIO.createImageInputStream(file) : null;
+        if (input == null) {
+            throw new IOException("Can't read input file!");
+        }
+        Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+        if (!readers.hasNext()) {
+            input.close();
+            throw new IOException("Unsupported image format");
+        }
+        this.reader = readers.next();
+        reader.setInput(input, false, false);
+        this.frameCount = reader.getNumImages(true);
+        int[] screen = logicalScreen(reader.getStreamMetadata());
+        this.canvasWidth = screen == null ? reader.getWidth(0) : screen[0];
+        this.canvasHeight = screen == null ? reader.getHeight(0) : screen[1];
+        this.canvas = new int[canvasWidth * canvasHeight];
+        Arrays.fill(canvas, PrepareImage.WHITE);
+    }
+
+    /**
+     * Returns the number of frames.
+     * @return The number of frames.
+     */
+    public int size() {
+        return frameCount;
+    }
+
+    /**
+     * Reads the next frame.
+     * @return The next frame, or null after the last frame.
+     * @throws IOException If the frame could not be read.
+     */
+    public Image next() throws IOException {
+        if (next == frameCount) {
+            return null;
+        }
+        int index = next++;
+        if (reader == null) {
+            return new Image(files.get(index).getPath());
+        }
+        BufferedImage frame = reader.read(index);
+        IIOMetadata metadata = reader.getImageMetadata(index);
+        Node descriptor = child(metadata, GIF_METADATA, "ImageDescriptor");
+        Node control = child(metadata, GIF_METADATA, "GraphicControlExtension");
+        int left = descriptor == null ? 0 : intAttribute(descriptor, "imageLeftPosition");
+        int top = descriptor == null ? 0 : intAttribute(descriptor, "imageTopPosition");
+        int width = Math.min(frame.getWidth(), canvasWidth - left);
+        int height = Math.min(frame.getHeight(), canvasHeight - top);
+        if (width > 0 && height > 0) {
+            int[] pixels = frame.getRGB(0, 0, width, height, null, 0, width);
+            for (int y = 0; y < height; y++) {
+                for (int x = 0; x < width; x++) {
+                    int rgb = pixels[y * width + x];
+                    if (rgb >>> ALPHA_SHIFT != 0) {
+                        canvas[(top + y) * canvasWidth + left + x] = rgb;
+                    }
+                }
+            }
+        }
+        Image image = new Image(canvas.clone(), canvasWidth, canvasHeight);
+        if (control != null && RESTORE_TO_BACKGROUND.equals(attribute(control, "disposalMethod"))) {
+            for (int y = 0; y < height; y++) {
+                Arrays.fill(canvas, (top + y) * canvasWidth + left,
+                        (top + y) * canvasWidth + left + width, PrepareImage.WHITE);
+            }
+        }
+        return image;
+    }
+
+    /**
+     * Closes the image file, if any.
+     * @throws IOException If the file could not be closed.
+     */
+    @Override
+    public void close() throws IOException {
+        if (reader != null) {
+            reader.dispose();
+            input.close();
+        }
+    }
+
+    private static boolean isImageFile(File file) {
+        String name = file.getName().toLowerCase(Locale.ROOT);
+        if (!file.isFile()) {
+            return false;
+        }
+        for (String suffix : IMAGE_SUFFIXES) {
+            if (name.endsWith(suffix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * The last number in the name of a frame file, so "frame10" comes after "frame9".
+     * @return The number, or -1 if the name has none.
+     */
+    private static long frameNumber(File file) {
+        String name = file.getName();
+        int end = name.length();
+        while (end > 0 && !Character.isDigit(name.charAt(end - 1))) {
+            end--;
+        }
+        int start = end;
+        while (start > 0 && Character.isDigit(name.charAt(start - 1))) {
+            start--;
+        }
+        return start == end ? -1 : Long.parseLong(name.substring(start, Math.min(end, start + 18)));
+    }
+
+    /**
+     * @return The GIF logical screen width and height, or null if the file has none.
+     */
+    private static int[] logicalScreen(IIOMetadata metadata) {
+        Node screen = child(metadata, GIF_STREAM_METADATA, "LogicalScreenDescriptor");
+        if (screen == null) {
+            return null;
+        }
+        int width = intAttribute(screen, "logicalScreenWidth");
+        int height = intAttribute(screen, "logicalScreenHeight");
+        return width > 0 && height > 0 ? new int[]{width, height} : null;
+    }
+
+    private static Node child(IIOMetadata metadata, String format, String name) {
+        if (metadata == null || !Arrays.asList(metadata.getMetadataFormatNames()).contains(format)) {
+            return null;
+        }
+        for (Node node = metadata.getAsTree(format).getFirstChild(); node != null;
+             node = node.getNextSibling()) {
+            if (node.getNodeName().equals(name)) {
+                return node;
+            }
+        }
+        return null;
+    }
+
+    private static String attribute(Node node, String name) {
+        NamedNodeMap attributes = node.getAttributes();
+        Node attribute = attributes == null ? null : attributes.getNamedItem(name);
+        return attribute == null ? null : attribute.getNodeValue();
+    }
+
+    private static int intAttribute(Node node, String name) {
+        String value = attribute(node, name);
+        return value == null ? 0 : Integer.parseInt(value);
+    }
+}
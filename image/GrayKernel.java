@@ -0,0 +1,139 @@
+package image;
+
+/**
+ * The innermost loops over the pixels of an image: unpacking the channels of packed RGB ints,
+ * weighting them into scaled gray codes, and adding whole rows of them into columns of sums.
+ * The scalar kernel runs everywhere. The vector kernel, VectorGrayKernel, runs the same exact integer arithmetic on
+ * SIMD lanes with the incubating JDK Vector API, so both kernels give identical results.
+ * The vector kernel is used when the jdk.incubator.vector module is present at run time
+ * (java --add-modules jdk.incubator.vector) and the kernel was compiled, unless the VECTOR_PROPERTY
+ * system property is false. The vector kernel lives in its own source root, vector, compiled after the
+ * rest of the tree with javac --add-modules jdk.incubator.vector, so the tree builds without the
+ * module, and then always runs the scalar kernel.
+ */
+public abstract class GrayKernel {
+
+    /**
+     * The system property that disables the vector kernel when set to false.
+     */
+    public static final String VECTOR_PROPERTY = "ascii_art.vector";
+    /**
+     * The number of rows that can be added into columns of int sums without overflowing them.
+     */
+    public static final int MAX_ROWS = (int) (Integer.MAX_VALUE / PrepareImage.grayCode(PrepareImage.WHITE));
+    private static final String VECTOR_MODULE = "jdk.incubator.vector";
+    private static final String VECTOR_KERNEL = "image.VectorGrayKernel";
+
+    private static final GrayKernel SCALAR = new Scalar();
+    private static final GrayKernel PREFERRED = loadPreferred();
+
+    /**
+     * Returns the vector kernel if it can be used, and the scalar kernel otherwise.
+     * @return The kernel.
+     */
+    public static GrayKernel get() {
+        return PREFERRED;
+    }
+
+    /**
+     * Returns the scalar kernel.
+     * @return The scalar kernel.
+     */
+    public static GrayKernel scalar() {
+        return SCALAR;
+    }
+
+    /**
+     * Loads the vector kernel without naming it, so this class never links against the module.
+     * @return The vector kernel, or the scalar kernel if the module is missing or disabled.
+     */
+    private static GrayKernel loadPreferred() {
+        if (!Boolean.parseBoolean(System.getProperty(VECTOR_PROPERTY, "true")) ||
+                ModuleLayer.boot().findModule(VECTOR_MODULE).isEmpty()) {
+            return SCALAR;
+        }
+        try {
+            return (GrayKernel) Class.forName(VECTOR_KERNEL).getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            return SCALAR;
+        }
+    }
+
+    /**
+     * Returns the name of the kernel, for reports.
+     * @return The name of the kernel, with its lane count if it is vectorized.
+     */
+    public abstract String name();
+
+    /**
+     * Calculates the scaled gray codes of a span of pixels, as PrepareImage.grayCode does.
+     * A gray code is at most 255*10000, so it fits an int.
+     * @param pixels The packed RGB values of the pixels.
+     * @param from The index of the first pixel of the span.
+     * @param length The number of pixels in the span.
+     * @param gray Receives the gray code of each pixel of the span, from index 0.
+     */
+    public abstract void grayCodes(int[] pixels, int from, int length, int[] gray);
+
+    /**
+     * Adds the scaled gray codes of a span of pixels to columns of sums, so the rows of a cell
+     * are summed with whole rows at a time, and each cell only sums its columns once.
+     * The columns can take MAX_ROWS rows before they may overflow.
+     * @param pixels The packed RGB values of the pixels.
+     * @param from The index of the first pixel of the span.
+     * @param length The number of pixels in the span.
+     * @param gray The columns, the gray code of each pixel of the span is added to them from index 0.
+     */
+    public abstract void addGrayCodes(int[] pixels, int from, int length, int[] gray);
+
+    /**
+     * Adds the scaled gray codes, and the red, green and blue channels, of a span of pixels
+     * to columns of sums, as addGrayCodes does.
+     * @param pixels The packed RGB values of the pixels.
+     * @param from The index of the first pixel of the span.
+     * @param length The number of pixels in the span.
+     * @param gray The columns of the gray codes.
+     * @param red The columns of the red channel.
+     * @param green The columns of the green channel.
+     * @param blue The columns of the blue channel.
+     */
+    public abstract void addChannels(int[] pixels, int from, int length,
+                                     int[] gray, int[] red, int[] green, int[] blue);
+
+    /**
+     * The kernel of plain loops, one pixel at a time.
+     */
+    private static final class Scalar extends GrayKernel {
+
+        @Override
+        public String name() {
+            return "scalar";
+        }
+
+        @Override
+        public void grayCodes(int[] pixels, int from, int length, int[] gray) {
+            for (int i = 0; i < length; i++) {
+                gray[i] = (int) PrepareImage.grayCode(pixels[from + i]);
+            }
+        }
+
+        @Override
+        public void addGrayCodes(int[] pixels, int from, int length, int[] gray) {
+            for (int i = 0; i < length; i++) {
+                gray[i] += (int) PrepareImage.grayCode(pixels[from + i]);
+            }
+        }
+
+        @Override
+        public void addChannels(int[] pixels, int from, int length,
+                                int[] gray, int[] red, int[] green, int[] blue) {
+            for (int i = 0; i < length; i++) {
+                int rgb = pixels[from + i];
+                gray[i] += (int) PrepareImage.grayCode(rgb);
+                red[i] += (rgb >> 16) & 0xFF;
+                green[i] += (rgb >> 8) & 0xFF;
+                blue[i] += rgb & 0xFF;
+            }
+        }
+    }
+}
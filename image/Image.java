@@ -5,34 +5,64 @@ import java.awt.*;
 import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 
 /**
  * A package-private class of the package image.
+ * The pixels are stored packed, one int per pixel in the default RGB color model,
+ * row after row. Uncompressed Netpbm and raw files are memory-mapped instead of decoded, see
+ * MappedRaster: their gray codes are read straight from the mapped bytes, and the packed pixels
+ * are only decoded on first use.
  * @author Dan Nirel
  */
 public class Image {
 
-    private final Color[][] pixelArray;
+    /**
+     * The packed pixels, null until first used if the image is mapped
+     */
+    private volatile int[] pixelArray;
+    /**
+     * The mapped pixels, or null if the image was decoded
+     */
+    private final MappedRaster raster;
     private final int width;
     private final int height;
 
     /**
      * Constructor for the Image class.
+     * Uncompressed Netpbm and raw files are mapped, any other format is decoded with ImageIO.
      * @param filename The name of the file to be read.
      * @throws IOException If the file is not found.
      */
     public Image(String filename) throws IOException {
+        raster = MappedRaster.open(filename);
+        if (raster != null) {
+            width = raster.getWidth();
+            height = raster.getHeight();
+            return;
+        }
         BufferedImage im = ImageIO.read(new File(filename));
         width = im.getWidth();
         height = im.getHeight();
 
+        // A single bulk read, instead of a Color object per pixel.
+        pixelArray = im.getRGB(0, 0, width, height, null, 0, width);
+    }
 
-        pixelArray = new Color[height][width];
-        for (int i = 0; i < height; i++) {
-            for (int j = 0; j < width; j++) {
-                pixelArray[i][j]=new Color(im.getRGB(j, i));
-            }
+    /**
+     * Constructor for the Image class, decoding the image from a stream.
+     * @param input The encoded image, it is read to its end but not closed.
+     * @throws IOException If the stream could not be read or its format is not supported.
+     */
+    public Image(InputStream input) throws IOException {
+        BufferedImage im = ImageIO.read(input);
+        if (im == null) {
+            throw new IOException("Unsupported image format");
         }
+        raster = null;
+        width = im.getWidth();
+        height = im.getHeight();
+        pixelArray = im.getRGB(0, 0, width, height, null, 0, width);
     }
 
     /**
@@ -42,7 +72,26 @@ public class Image {
      * @param height The height of the image.
      */
     public Image(Color[][] pixelArray, int width, int height) {
+        this.pixelArray = new int[width * height];
+        this.raster = null;
+        this.width = width;
+        this.height = height;
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                this.pixelArray[y * width + x] = pixelArray[y][x].getRGB();
+            }
+        }
+    }
+
+    /**
+     * Constructor for the Image class.
+     * @param pixelArray The packed RGB values of the pixels, row after row.
+     * @param width The width of the image.
+     * @param height The height of the image.
+     */
+    public Image(int[] pixelArray, int width, int height) {
         this.pixelArray = pixelArray;
+        this.raster = null;
         this.width = width;
         this.height = height;
     }
@@ -65,12 +114,58 @@ public class Image {
 
     /**
      * Returns the pixel at the given coordinates.
+     * Allocates a new Color, prefer getRgb where possible.
      * @param x The x-coordinate of the pixel.
      * @param y The y-coordinate of the pixel.
      * @return The Color object at the given coordinates.
      */
     public Color getPixel(int x, int y) {
-        return pixelArray[y][x];
+        return new Color(getRgb(x, y));
+    }
+
+    /**
+     * Returns the packed RGB value of the pixel at the given coordinates.
+     * @param x The x-coordinate of the pixel.
+     * @param y The y-coordinate of the pixel.
+     * @return The RGB value at the given coordinates, in the default RGB color model.
+     */
+    public int getRgb(int x, int y) {
+        return getRgbArray()[y * width + x];
+    }
+
+    /**
+     * Returns the packed RGB values of all the pixels, for loops over whole rows.
+     * A mapped image is decoded on the first call.
+     * @return The packed RGB values, row after row. Shared, it must not be changed.
+     */
+    int[] getRgbArray() {
+        int[] pixels = pixelArray;
+        if (pixels == null) {
+            synchronized (this) {
+                pixels = pixelArray;
+                if (pixels == null) {
+                    pixels = raster.decode();
+                    pixelArray = pixels;
+                }
+            }
+        }
+        return pixels;
+    }
+
+    /**
+     * Calculates the scaled gray codes of a row of pixels, straight from the mapped bytes of a
+     * mapped image, without decoding it.
+     * @param y The row.
+     * @param kernel The kernel calculating the gray codes of decoded pixels.
+     * @param grayCodes Receives the gray code of each pixel of the row.
+     */
+    void grayCodes(int y, GrayKernel kernel, int[] grayCodes) {
+        int[] pixels = pixelArray;
+        if (pixels == null) {
+            raster.grayCodes(y, grayCodes);
+        } else {
+            kernel.grayCodes(pixels, y * width, width, grayCodes);
+        }
     }
 
     /**
@@ -78,15 +173,9 @@ public class Image {
      * @param fileName The name of the file to be saved.
      */
     public void saveImage(String fileName){
-        // Initialize BufferedImage, assuming Color[][] is already properly populated.
-        BufferedImage bufferedImage = new BufferedImage(pixelArray[0].length,
-                pixelArray.length, BufferedImage.TYPE_INT_RGB);
-        // Set each pixel of the BufferedImage to the color from the Color[][].
-        for (int x = 0; x < pixelArray.length; x++) {
-            for (int y = 0; y < pixelArray[x].length; y++) {
-                bufferedImage.setRGB(y, x, pixelArray[x][y].getRGB());
-            }
-        }
+        BufferedImage bufferedImage = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        // Set all the pixels of the BufferedImage in one bulk write.
+        bufferedImage.setRGB(0, 0, width, height, getRgbArray(), 0, width);
         File outputfile = new File(fileName+".jpeg");
         try {
             ImageIO.write(bufferedImage, "jpeg", outputfile);
@@ -0,0 +1,265 @@
+package image;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * The uncompressed pixels of a file, memory-mapped with FileChannel.map and read in place, with
+ * no decoder, BufferedImage or object per pixel. Reads binary Netpbm files, P5 (gray), P6 (RGB)
+ * and P7 (PAM, gray or RGB with an optional alpha channel, which is ignored), with samples of
+ * one or two bytes, and headerless raw files of 8 bit samples: RGB_SUFFIX files of RGB triplets,
+ * and GRAY_SUFFIX files of gray bytes, named with their size as WIDTHxHEIGHT before any frame
+ * number, e.g. frame-640x480-0001.rgb.
+ * Samples of any maximum other than 255 are scaled to 0..255, rounding as Netpbm does.
+ * The gray codes of a row are calculated straight from the mapped bytes, as PrepareImage.grayCode
+ * calculates them from the packed RGB value of the pixel.
+ */
+final class MappedRaster {
+    /**
+     * The suffix of headerless raw RGB files
+     */
+    static final String RGB_SUFFIX = ".rgb";
+    /**
+     * The suffix of headerless raw gray files
+     */
+    static final String GRAY_SUFFIX = ".gray";
+    private static final Pattern RAW_SIZE = Pattern.compile("(\\d+)x(\\d+)");
+    private static final String PAM_END = "ENDHDR";
+    private static final int MAX_SAMPLE = 0xFF;
+    private static final int MAX_WIDE_SAMPLE = 0xFFFF;
+    private static final int OPAQUE = 0xFF000000;
+    private static final int RGB_DEPTH = 3;
+
+    /**
+     * The pixels, row after row, each of depth samples of bytesPerSample big-endian bytes
+     */
+    private final ByteBuffer pixels;
+    private final int width;
+    private final int height;
+    private final int depth;
+    private final int bytesPerSample;
+    /**
+     * Whether the pixels are gray, a single sample, rather than red, green and blue ones
+     */
+    private final boolean gray;
+    /**
+     * The sample of 0..255 of each raw sample, or null if the raw samples are already 0..255
+     */
+    private final int[] scale;
+
+    private MappedRaster(ByteBuffer pixels, int width, int height, int depth, int maxValue)
+            throws IOException {
+        if (width < 1 || height < 1 || depth < 1 || depth > 4 || maxValue < 1 || maxValue > MAX_WIDE_SAMPLE) {
+            throw new IOException("Unsupported image format");
+        }
+        this.width = width;
+        this.height = height;
+        this.depth = depth;
+        this.bytesPerSample = maxValue > MAX_SAMPLE ? 2 : 1;
+        this.gray = depth < RGB_DEPTH;
+        if ((long) width * height * depth * bytesPerSample > pixels.remaining()) {
+            throw new IOException("Truncated image");
+        }
+        this.pixels = pixels.slice();
+        if (maxValue == MAX_SAMPLE) {
+            this.scale = null;
+        } else {
+            this.scale = new int[maxValue + 1];
+            for (int i = 0; i <= maxValue; i++) {
+                scale[i] = (i * MAX_SAMPLE + maxValue / 2) / maxValue;
+            }
+        }
+    }
+
+    /**
+     * Maps a file if it is in one of the formats read in place.
+     * @param filename The name of the file.
+     * @return The mapped pixels, or null if the file is not in one of the formats, so it is to be decoded.
+     * @throws IOException If the file could not be read, or is in one of the formats but malformed.
+     */
+    static MappedRaster open(String filename) throws IOException {
+        Path path = Paths.get(filename);
+        String name = path.getFileName().toString().toLowerCase(Locale.ROOT);
+        boolean rgb = name.endsWith(RGB_SUFFIX);
+        boolean raw = rgb || name.endsWith(GRAY_SUFFIX);
+        ByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (!raw && !isNetpbm(channel)) {
+                return null;
+            }
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Image too large to map");
+            }
+            // the mapping stays valid after the channel is closed
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        return raw ? openRaw(buffer, name, rgb) : openNetpbm(buffer);
+    }
+
+    /**
+     * Reads the magic number of a file, without mapping it.
+     */
+    private static boolean isNetpbm(FileChannel channel) throws IOException {
+        ByteBuffer magic = ByteBuffer.allocate(2);
+        while (magic.hasRemaining() && channel.read(magic, magic.position()) > 0) {
+            // reads until the two bytes are in, or the file ends
+        }
+        return magic.position() == 2 && magic.get(0) == 'P' &&
+                (magic.get(1) == '5' || magic.get(1) == '6' || magic.get(1) == '7');
+    }
+
+    private static MappedRaster openRaw(ByteBuffer buffer, String name, boolean rgb) throws IOException {
+        Matcher size = RAW_SIZE.matcher(name);
+        if (!size.find()) {
+            throw new IOException("Raw image name without WIDTHxHEIGHT");
+        }
+        int depth = rgb ? RGB_DEPTH : 1;
+        MappedRaster raster;
+        try {
+            raster = new MappedRaster(buffer, Integer.parseInt(size.group(1)), Integer.parseInt(size.group(2)),
+                    depth, MAX_SAMPLE);
+        } catch (NumberFormatException e) {
+            throw new IOException("Unsupported image format");
+        }
+        if ((long) raster.width * raster.height * depth != buffer.remaining()) {
+            throw new IOException("Raw image size does not match its name");
+        }
+        return raster;
+    }
+
+    private static MappedRaster openNetpbm(ByteBuffer buffer) throws IOException {
+        char format = (char) buffer.get(1);
+        buffer.position(2);
+        if (format != '7') {
+            int width = nextNumber(buffer);
+            int height = nextNumber(buffer);
+            int maxValue = nextNumber(buffer);
+            // a single whitespace byte ends the header
+            buffer.get();
+            return new MappedRaster(buffer, width, height, format == '6' ? RGB_DEPTH : 1, maxValue);
+        }
+        int width = 0;
+        int height = 0;
+        int depth = 0;
+        int maxValue = 0;
+        for (String key = nextToken(buffer); !key.equals(PAM_END); key = nextToken(buffer)) {
+            switch (key) {
+                case "WIDTH" -> width = nextNumber(buffer);
+                case "HEIGHT" -> height = nextNumber(buffer);
+                case "DEPTH" -> depth = nextNumber(buffer);
+                case "MAXVAL" -> maxValue = nextNumber(buffer);
+                default -> skipLine(buffer);
+            }
+        }
+        skipLine(buffer);
+        return new MappedRaster(buffer, width, height, depth, maxValue);
+    }
+
+    /**
+     * Reads the next token of a header, skipping whitespace and comments.
+     */
+    private static String nextToken(ByteBuffer buffer) throws IOException {
+        int start = -1;
+        while (buffer.hasRemaining()) {
+            byte b = buffer.get(buffer.position());
+            if (start < 0 && b == '#') {
+                skipLine(buffer);
+                continue;
+            }
+            boolean space = b == ' ' || b == '\t' || b == '\n' || b == '\r' || b == '\f' || b == 0x0B;
+            if (start >= 0 && space) {
+                break;
+            }
+            buffer.get();
+            if (start < 0 && !space) {
+                start = buffer.position() - 1;
+            }
+        }
+        if (start < 0) {
+            throw new IOException("Truncated image");
+        }
+        byte[] token = new byte[buffer.position() - start];
+        buffer.get(start, token);
+        return new String(token, StandardCharsets.US_ASCII);
+    }
+
+    private static int nextNumber(ByteBuffer buffer) throws IOException {
+        try {
+            return Integer.parseInt(nextToken(buffer));
+        } catch (NumberFormatException e) {
+            throw new IOException("Unsupported image format");
+        }
+    }
+
+    private static void skipLine(ByteBuffer buffer) {
+        while (buffer.hasRemaining() && buffer.get() != '\n') {
+            // skips to the end of the line
+        }
+    }
+
+    int getWidth() {
+        return width;
+    }
+
+    int getHeight() {
+        return height;
+    }
+
+    /**
+     * Returns a sample of 0..255.
+     * @param index The index of the first byte of the sample.
+     */
+    private int sample(int index) {
+        int raw = bytesPerSample == 1 ? pixels.get(index) & MAX_SAMPLE : pixels.getShort(index) & MAX_WIDE_SAMPLE;
+        return scale == null ? raw : scale[raw];
+    }
+
+    /**
+     * Calculates the scaled gray codes of a row of pixels, straight from the mapped bytes.
+     * @param y The row.
+     * @param grayCodes Receives the gray code of each pixel of the row.
+     */
+    void grayCodes(int y, int[] grayCodes) {
+        int pixelBytes = depth * bytesPerSample;
+        int index = y * width * pixelBytes;
+        if (gray) {
+            int white = (int) PrepareImage.grayCode(PrepareImage.WHITE) / MAX_SAMPLE;
+            for (int x = 0; x < width; x++, index += pixelBytes) {
+                grayCodes[x] = sample(index) * white;
+            }
+            return;
+        }
+        for (int x = 0; x < width; x++, index += pixelBytes) {
+            grayCodes[x] = (int) (sample(index) * PrepareImage.RED_FACTOR +
+                    sample(index + bytesPerSample) * PrepareImage.GREEN_FACTOR +
+                    sample(index + 2 * bytesPerSample) * PrepareImage.BLUE_FACTOR);
+        }
+    }
+
+    /**
+     * Decodes the pixels into packed RGB values, opaque.
+     * @return The packed RGB values, row after row.
+     */
+    int[] decode() {
+        int[] rgb = new int[width * height];
+        int pixelBytes = depth * bytesPerSample;
+        for (int i = 0, index = 0; i < rgb.length; i++, index += pixelBytes) {
+            if (gray) {
+                int value = sample(index);
+                rgb[i] = OPAQUE | value << 16 | value << 8 | value;
+            } else {
+                rgb[i] = OPAQUE | sample(index) << 16 | sample(index + bytesPerSample) << 8 |
+                        sample(index + 2 * bytesPerSample);
+            }
+        }
+        return rgb;
+    }
+}
@@ -1,37 +1,116 @@
 package image;
 
-import java.awt.Color;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * Tasked with preparing the image for the ascii art algorithm
  */
 public class PrepareImage {
-    
+
     /**
-     * The factors used to calculate the gray code of a color.
+     * The factors used to calculate the gray code of a color, scaled by GRAY_SCALE
+     * so the gray codes can be summed exactly as integers.
      */
-    private static final double RED_FACTOR = 0.2126;
-    private static final double GREEN_FACTOR = 0.7152;
-    private static final double BLUE_FACTOR = 0.0722;
-    private static final Color WHITE = new Color(255, 255, 255);
+    static final long RED_FACTOR = 2126;
+    static final long GREEN_FACTOR = 7152;
+    static final long BLUE_FACTOR = 722;
+    private static final double GRAY_SCALE = 10000;
+    static final int WHITE = 0xFFFFFFFF;
+    private static final int OPAQUE = 0xFF000000;
     private static final double GRAY_WHITE = 255;
 
     /**
      * Instance variables for the PrepareImage class.
-     * The buffered image is the image that has been buffered to the nearest power of 2.
+     * The gray sums are the summed-area table of the image's gray codes, with one extra
+     * leading row and column of zeros: graySums[y*(width+1)+x] is the sum over all the
+     * pixels above and to the left of (x,y).
+     * The white padding around the image is never materialized, cells reaching into it
+     * count its pixels as white.
      * The original image is the image that was passed to the constructor.
      */
-    private Image bufferedImage;
-    private Image originalImage;
+    private final int width;
+    private final int height;
+    private final long[] graySums;
+    private final Image originalImage;
+    /**
+     * Whether the cells are laid over the image padded to the nearest powers of 2,
+     * or over the image padded only up to a whole number of cells.
+     */
+    private final boolean powerOfTwoPadding;
+    /**
+     * The shared pool running the row bands in parallel, null when running sequentially.
+     */
+    private final ForkJoinPool pool;
+    /**
+     * The kernel of the loops over the pixels.
+     */
+    private final GrayKernel kernel;
+    /**
+     * The brightness pyramid of the power of 2 layout: the gray sums of the cells of each
+     * resolution computed so far, keyed by the side length of the cells. Each level is
+     * exactly a 2x2 reduction of the level with cells half its side.
+     */
+    private final Map<Integer, long[][]> pyramid = new ConcurrentHashMap<>();
 
 
     /**
-     * Constructor for the PrepareImage class.
+     * Constructor for the PrepareImage class, preparing the image on the calling thread.
      * @param image The image to be prepared.
      */
     public PrepareImage(Image image) {
-        this.bufferedImage = getBuffered(image);
+        this(image, 1);
+    }
+
+    /**
+     * Constructor for the PrepareImage class, padding the image to the nearest powers of 2.
+     * The parallel and sequential preparations give bit-identical brightness.
+     * @param image The image to be prepared.
+     * @param parallelism The number of threads to prepare the image with, 1 for sequential.
+     * @throws IllegalArgumentException if the parallelism is not positive.
+     */
+    public PrepareImage(Image image, int parallelism) throws IllegalArgumentException {
+        this(image, parallelism, true);
+    }
+
+    /**
+     * Constructor for the PrepareImage class.
+     * The parallel and sequential preparations give bit-identical brightness.
+     * @param image The image to be prepared.
+     * @param parallelism The number of threads to prepare the image with, 1 for sequential.
+     * @param powerOfTwoPadding Whether to pad the image to the nearest powers of 2 and only allow
+     *                          power of 2 resolutions, or to pad it only up to a whole number of
+     *                          cells and allow any resolution.
+     * @throws IllegalArgumentException if the parallelism is not positive.
+     */
+    public PrepareImage(Image image, int parallelism, boolean powerOfTwoPadding)
+            throws IllegalArgumentException {
+        this(image, parallelism, powerOfTwoPadding, GrayKernel.get());
+    }
+
+    /**
+     * Constructor for the PrepareImage class, with the given kernel for the loops over the pixels.
+     * Every kernel gives bit-identical brightness and colors.
+     * @param image The image to be prepared.
+     * @param parallelism The number of threads to prepare the image with, 1 for sequential.
+     * @param powerOfTwoPadding Whether to pad the image to the nearest powers of 2, see above.
+     * @param kernel The kernel of the loops over the pixels.
+     * @throws IllegalArgumentException if the parallelism is not positive.
+     */
+    public PrepareImage(Image image, int parallelism, boolean powerOfTwoPadding, GrayKernel kernel)
+            throws IllegalArgumentException {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("parallelism must be positive.");
+        }
+        this.pool = Bands.pool(parallelism);
+        this.kernel = kernel;
+        this.width = image.getWidth();
+        this.height = image.getHeight();
+        this.graySums = getGraySums(image);
         this.originalImage = image;
+        this.powerOfTwoPadding = powerOfTwoPadding;
     }
 
     /**
@@ -41,127 +120,356 @@ public class PrepareImage {
     public Image getOriginalImage() {
         return originalImage;
     }
-  
+
     /**
-     * Calculates the width the image should be buffered to.
-     * @return The width the image should be buffered to.
+     * Calculates the gray code of a given color, scaled by GRAY_SCALE.
+     * White is exactly GRAY_WHITE*GRAY_SCALE, so it needs no special handling.
+     * @param rgb The packed RGB value of the color to calculate the gray code of.
+     * @return The scaled gray code of the given color.
      */
-    private int bufferedWidth(Image image) {
-        int newWidth = 2;
-        while (newWidth < image.getWidth()) {
-            newWidth *= 2;
-        }
-        return newWidth;
+    static long grayCode(int rgb) {
+        return ((rgb >> 16) & 0xFF) * RED_FACTOR +
+                ((rgb >> 8) & 0xFF) * GREEN_FACTOR +
+                (rgb & 0xFF) * BLUE_FACTOR;
     }
 
     /**
-     * Calculates the height the image should be buffered to.
-     * @return The height the image should be buffered to.
+     * Builds the summed-area table of the gray codes of the image.
+     * First sums each row in row bands, the gray codes of a row coming from the kernel,
+     * or straight from the mapped bytes of a mapped image,
+     * then accumulates the rows downwards in column bands.
+     * The sums are exact integers, so the order of the bands does not change the result.
+     * @param image The image to build the table for.
+     * @return The summed-area table, see graySums.
      */
-    private static int bufferedHeight(Image image) {
-        int newHeight = 2;
-        while (newHeight < image.getHeight()) {
-            newHeight *= 2;
-        }
-        return newHeight;
+    private long[] getGraySums(Image image) {
+        int stride = image.getWidth() + 1;
+        long[] sums = new long[stride * (image.getHeight() + 1)];
+        Bands.forEach(pool, image.getHeight(), (from, to) -> {
+            int[] gray = new int[image.getWidth()];
+            for (int y = from; y < to; y++) {
+                image.grayCodes(y, kernel, gray);
+                long rowSum = 0;
+                for (int x = 0; x < image.getWidth(); x++) {
+                    rowSum += gray[x];
+                    sums[(y + 1) * stride + x + 1] = rowSum;
+                }
+            }
+        });
+        Bands.forEach(pool, stride, (from, to) -> {
+            for (int y = 2; y <= image.getHeight(); y++) {
+                for (int x = from; x < to; x++) {
+                    sums[y * stride + x] += sums[(y - 1) * stride + x];
+                }
+            }
+        });
+        return sums;
     }
 
     /**
-     * Calculates the gray code of a given color.
-     * @param color The color to calculate the gray code of.
-     * @return The gray code of the given color.
+     * Calculates the sum of the scaled gray codes of a cell, using four lookups.
+     * The part of the cell outside the image counts as white.
+     * @param x The left column of the cell, in image coordinates, may be negative.
+     * @param y The top row of the cell, in image coordinates, may be negative.
+     * @param pixelDim The side length of the cell.
+     * @return The sum of the scaled gray codes of the cell.
      */
-    private static double grayCode(Color color) {
-        if (color.equals(WHITE)) {
-            // To pre-handle the case of white pixels, avoid incorrect rounding.
-            return GRAY_WHITE;
+    private long getCellSum(int x, int y, int pixelDim) {
+        int left = Math.max(x, 0);
+        int right = Math.min(x + pixelDim, width);
+        int top = Math.max(y, 0);
+        int bottom = Math.min(y + pixelDim, height);
+        long sum = 0;
+        long inside = 0;
+        if (left < right && top < bottom) {
+            int stride = width + 1;
+            sum = graySums[bottom * stride + right] - graySums[bottom * stride + left]
+                    - graySums[top * stride + right] + graySums[top * stride + left];
+            inside = (long) (right - left) * (bottom - top);
         }
-        return color.getRed() * RED_FACTOR +
-                color.getGreen() * GREEN_FACTOR +
-                color.getBlue() * BLUE_FACTOR;
+        long cellPixels = (long) pixelDim * pixelDim;
+        return sum + (cellPixels - inside) * grayCode(WHITE);
     }
-    
+
     /**
-     * Calculates the brightness of the image.
-     * @return The brightness of the image.
+     * Calculates the brightness of a cell from the sum of its scaled gray codes.
+     * @param graySum The sum of the scaled gray codes of the pixels in the cell.
+     * @param pixels The number of pixels summed.
+     * @return The brightness of the cell.
      */
-    private double getPixelBrightness(Image image) {
-        double brightness = 0;
-        for (int i = 0; i < image.getWidth(); i++) {
-            for (int j = 0; j < image.getHeight(); j++) {
-                brightness += grayCode(image.getPixel(i,j));
+    static double cellBrightness(long graySum, long pixels) {
+        return graySum / (GRAY_SCALE * GRAY_WHITE * pixels);
+    }
+
+    /**
+     * Calculates the brightness of each sub-image (pixel) of the image.
+     * Each sub-image costs four lookups in the summed-area table, no sub-images are copied.
+     * With power of 2 padding the sums of the sub-images are kept in a pyramid, so a resolution
+     * half of one already computed is a 2x2 reduction of it.
+     * @param resolution The number of sub-images along the image width.
+     * @return A 2D array of doubles, representing the brightness of each sub-image. An array of rows!
+     * @throws IllegalArgumentException if the resolution is out of bounds for the padding.
+     */
+    public double[][] getImageBrightness(int resolution) throws IllegalArgumentException {
+        CellLayout layout = powerOfTwoPadding ? CellLayout.powerOfTwo(width, height, resolution) :
+                CellLayout.minimal(width, height, resolution);
+        int pixelDim = layout.pixelDim();
+        long cellPixels = (long) pixelDim * pixelDim;
+        long[][] sums = powerOfTwoPadding ? getLevelSums(layout) : null;
+        double[][] brightness = new double[layout.rows()][resolution];
+        Bands.forEach(pool, layout.rows(), (from, to) -> {
+            for (int y = from; y < to; y++) {
+                for (int x = 0; x < resolution; x++) {
+                    long sum = sums != null ? sums[y][x] : getCellSum(x * pixelDim - layout.sideBuffer(),
+                            y * pixelDim - layout.topBuffer(), pixelDim);
+                    brightness[y][x] = cellBrightness(sum, cellPixels);
+                }
             }
-        }
-        return brightness/(255*image.getWidth()*image.getHeight());
+        });
+        return brightness;
     }
 
     /**
-     * Buffers the image to the nearest power of 2.
-     * @param image The image to be buffered.
-     * @return The buffered image.
+     * Returns the gray sums of the cells of a level of the brightness pyramid.
+     * A level holds every whole cell of its side that fits in the padded image, whatever the
+     * resolution it was asked for, so a level covers every resolution with cells of that side,
+     * and the 2x2 reduction of a level is exactly the level with cells twice its side.
+     * A level is reduced from the level with cells half its side if that was computed, and
+     * otherwise looked up in the summed-area table, after which all the coarser levels are
+     * reduced from it too, so moving the resolution down by factors of 2 costs no more lookups.
+     * @param layout The power of 2 layout of the level.
+     * @return The gray sums of the cells, an array of rows. Shared, it must not be changed.
      */
-    private Image getBuffered(Image image) {
-        int buffH = bufferedHeight(image);
-        int buffW = bufferedWidth(image);
+    private long[][] getLevelSums(CellLayout layout) {
+        int pixelDim = layout.pixelDim();
+        long[][] sums = pyramid.get(pixelDim);
+        if (sums != null) {
+            return sums;
+        }
+        int columns = CellLayout.bufferedSize(width) / pixelDim;
+        // a level with odd cells is not made of cells of half its side
+        long[][] finer = pixelDim % 2 == 0 ? pyramid.get(pixelDim / 2) : null;
+        if (finer != null) {
+            sums = reduce(finer, layout.rows(), columns);
+            pyramid.put(pixelDim, sums);
+            return sums;
+        }
+        long[][] level = new long[layout.rows()][columns];
+        Bands.forEach(pool, layout.rows(), (from, to) -> {
+            for (int y = from; y < to; y++) {
+                for (int x = 0; x < columns; x++) {
+                    level[y][x] = getCellSum(x * pixelDim - layout.sideBuffer(),
+                            y * pixelDim - layout.topBuffer(), pixelDim);
+                }
+            }
+        });
+        pyramid.put(pixelDim, level);
+        long[][] coarser = level;
+        for (int dim = pixelDim * 2; coarser.length >= 2 && coarser[0].length >= 2; dim *= 2) {
+            if (pyramid.containsKey(dim)) {
+                break;
+            }
+            coarser = reduce(coarser, coarser.length / 2, coarser[0].length / 2);
+            pyramid.put(dim, coarser);
+        }
+        return level;
+    }
 
-        int topBuffer = (buffH-image.getHeight())/2;
-        int sideBuffer = (buffW-image.getWidth())/2;
+    /**
+     * Sums each 2x2 block of cells of a level into one cell of the next coarser level.
+     * @param finer The gray sums of the finer level.
+     * @param rows The number of rows of the coarser level.
+     * @param columns The number of columns of the coarser level.
+     * @return The gray sums of the coarser level.
+     */
+    private long[][] reduce(long[][] finer, int rows, int columns) {
+        long[][] coarser = new long[rows][columns];
+        Bands.forEach(pool, rows, (from, to) -> {
+            for (int y = from; y < to; y++) {
+                long[] top = finer[2 * y];
+                long[] bottom = finer[2 * y + 1];
+                for (int x = 0; x < columns; x++) {
+                    coarser[y][x] = top[2 * x] + top[2 * x + 1] + bottom[2 * x] + bottom[2 * x + 1];
+                }
+            }
+        });
+        return coarser;
+    }
 
-        Color[][] newPixelArray = new Color[buffH][buffW];
-        for (int y = 0; y < buffH ;y++) {
-            for (int x = 0; x < buffW; x++) {
-                if (x < sideBuffer || x >= sideBuffer + image.getWidth() ||
-                        y < topBuffer || y >= topBuffer + image.getHeight()) {
-                    newPixelArray[y][x]= WHITE;
+    /**
+     * Thresholds each cell of the image to a side x side bitmask, for matching cells to chars by
+     * their shape. The cell is split into side x side sub-cells, or into single pixels repeated
+     * when the cell is smaller than the mask. The corners of the sub-cells of a whole row of cells
+     * are read from the summed-area table one table row at a time, in order, and each sub-cell is
+     * summed from its four corners.
+     * A bit is set when its sub-cell is brighter than halfway between the darkest and the brightest
+     * sub-cells of the cell. Bit y*side+x is bit (y*side+x)%64 of word (y*side+x)/64.
+     * Cells without enough contrast have no shape worth matching, and get no mask.
+     * @param resolution The number of cells along the image width.
+     * @param side The side length of the masks, in bits.
+     * @param minContrast The smallest difference in brightness, in [0,1], between the darkest and
+     *                    the brightest sub-cells of a cell for it to get a mask.
+     * @return The masks of the cells, an array of rows, with null for the cells without a mask.
+     * @throws IllegalArgumentException if the resolution is out of bounds for the padding.
+     */
+    public long[][][] getCellMasks(int resolution, int side, double minContrast) throws IllegalArgumentException {
+        CellLayout layout = powerOfTwoPadding ? CellLayout.powerOfTwo(width, height, resolution) :
+                CellLayout.minimal(width, height, resolution);
+        int pixelDim = layout.pixelDim();
+        int subCells = Math.min(side, pixelDim);
+        int[] bounds = new int[subCells + 1];
+        for (int i = 0; i <= subCells; i++) {
+            bounds[i] = i * pixelDim / subCells;
+        }
+        double[] perPixel = new double[subCells * subCells];
+        for (int j = 0; j < subCells; j++) {
+            for (int i = 0; i < subCells; i++) {
+                perPixel[j * subCells + i] = 1.0 / ((bounds[i + 1] - bounds[i]) * (bounds[j + 1] - bounds[j]));
+            }
+        }
+        int[] subCellOfBit = new int[side];
+        for (int i = 0; i < side; i++) {
+            subCellOfBit[i] = i * subCells / side;
+        }
+        // the columns of the corners of all the sub-cells in a row of cells, clamped to the image
+        int columns = resolution * subCells + 1;
+        int[] xs = new int[columns];
+        for (int x = 0; x < resolution; x++) {
+            for (int i = 0; i < subCells; i++) {
+                xs[x * subCells + i] = clamp(x * pixelDim - layout.sideBuffer() + bounds[i], width);
+            }
+        }
+        xs[columns - 1] = clamp(resolution * pixelDim - layout.sideBuffer(), width);
+        double contrast = minContrast * GRAY_SCALE * GRAY_WHITE;
+        long white = grayCode(WHITE);
+        int stride = width + 1;
+        long[][][] masks = new long[layout.rows()][resolution][];
+        Bands.forEach(pool, layout.rows(), (from, to) -> {
+            int[] ys = new int[subCells + 1];
+            long[] corners = new long[(subCells + 1) * columns];
+            double[] gray = new double[subCells * subCells];
+            for (int y = from; y < to; y++) {
+                for (int j = 0; j <= subCells; j++) {
+                    ys[j] = clamp(y * pixelDim - layout.topBuffer() + bounds[j], height);
+                    int row = ys[j] * stride;
+                    for (int k = 0; k < columns; k++) {
+                        corners[j * columns + k] = graySums[row + xs[k]];
+                    }
                 }
-                else {
-                    newPixelArray[y][x] = image.getPixel(x - sideBuffer, y - topBuffer);
+                for (int x = 0; x < resolution; x++) {
+                    int first = x * subCells;
+                    double darkest = Double.MAX_VALUE;
+                    double brightest = 0;
+                    for (int j = 0; j < subCells; j++) {
+                        int top = j * columns + first;
+                        int bottom = top + columns;
+                        for (int i = 0; i < subCells; i++) {
+                            long sum = corners[bottom + i + 1] - corners[bottom + i]
+                                    - corners[top + i + 1] + corners[top + i];
+                            long pixels = (long) (bounds[i + 1] - bounds[i]) * (bounds[j + 1] - bounds[j]);
+                            long inside = (long) (xs[first + i + 1] - xs[first + i]) * (ys[j + 1] - ys[j]);
+                            double average = (sum + (pixels - inside) * white) * perPixel[j * subCells + i];
+                            gray[j * subCells + i] = average;
+                            if (average < darkest) {
+                                darkest = average;
+                            }
+                            if (average > brightest) {
+                                brightest = average;
+                            }
+                        }
+                    }
+                    if (brightest - darkest < contrast) {
+                        continue;
+                    }
+                    double threshold = (darkest + brightest) / 2;
+                    long[] mask = new long[(side * side + Long.SIZE - 1) / Long.SIZE];
+                    for (int j = 0; j < side; j++) {
+                        int row = subCellOfBit[j] * subCells;
+                        for (int i = 0; i < side; i++) {
+                            int bit = j * side + i;
+                            mask[bit / Long.SIZE] |= (gray[row + subCellOfBit[i]] > threshold ? 1L : 0L) << bit;
+                        }
+                    }
+                    masks[y][x] = mask;
                 }
-        }
-    }
-        return new Image(newPixelArray, buffW, buffH);
+            }
+        });
+        return masks;
     }
 
     /**
-     * Splits the image into sub-images of a given resolution.
-     * @param resolution The of parts to split the image width into.
-     * @return A 2D array of Image objects. An array of rows!
+     * @return the coordinate clamped to [0, size].
      */
-    private Image[][] getSubImages(int resolution) {
-        int pixelDim = bufferedImage.getWidth()/resolution;
-        int pixelPrHeight = bufferedImage.getHeight()/pixelDim;
+    private static int clamp(int coordinate, int size) {
+        return Math.min(Math.max(coordinate, 0), size);
+    }
 
-        Image[][] subImages = new Image[pixelPrHeight][resolution];
-        for (int i = 0; i < resolution ; i++) {
-            for (int j = 0; j < pixelPrHeight; j++) {
-                Color[][] subImage = new Color[pixelDim][pixelDim];
-                for (int x = 0; x < pixelDim; x++) {
-                    for (int y = 0; y < pixelDim; y++) {
-                        subImage[y][x] = bufferedImage.getPixel(x + pixelDim*i, y + pixelDim*j);
+    /**
+     * Calculates the brightness and the average color of each cell of the image, in a single
+     * pass over its pixels. The kernel adds the pixel rows of a row of cells into columns, which
+     * each cell then sums, so the kernel always runs over whole rows. The part of a cell outside
+     * the image counts as white.
+     * The brightness is identical to that of getImageBrightness.
+     * @param resolution The number of cells along the image width.
+     * @return The brightness and colors of the cells.
+     * @throws IllegalArgumentException if the resolution is out of bounds for the padding.
+     */
+    public ColoredCells getColoredCells(int resolution) throws IllegalArgumentException {
+        CellLayout layout = powerOfTwoPadding ? CellLayout.powerOfTwo(width, height, resolution) :
+                CellLayout.minimal(width, height, resolution);
+        int pixelDim = layout.pixelDim();
+        long cellPixels = (long) pixelDim * pixelDim;
+        // the columns of the image inside each cell, [cellLeft[x], cellLeft[x+1])
+        int[] cellLeft = new int[resolution + 1];
+        for (int x = 0; x <= resolution; x++) {
+            cellLeft[x] = Math.min(Math.max(x * pixelDim - layout.sideBuffer(), 0), width);
+        }
+        int[] pixels = originalImage.getRgbArray();
+        double[][] brightness = new double[layout.rows()][resolution];
+        int[][] colors = new int[layout.rows()][resolution];
+        Bands.forEach(pool, layout.rows(), (from, to) -> {
+            int[][] columns = new int[4][width];
+            long[][] sums = new long[4][resolution];
+            for (int row = from; row < to; row++) {
+                for (long[] channel : sums) {
+                    Arrays.fill(channel, 0);
+                }
+                int top = Math.max(0, row * pixelDim - layout.topBuffer());
+                int bottom = Math.min(height, (row + 1) * pixelDim - layout.topBuffer());
+                for (int y = top; y < bottom; y += GrayKernel.MAX_ROWS) {
+                    for (int[] channel : columns) {
+                        Arrays.fill(channel, 0);
                     }
+                    for (int line = y; line < Math.min(bottom, y + GrayKernel.MAX_ROWS); line++) {
+                        kernel.addChannels(pixels, line * width, width,
+                                columns[0], columns[1], columns[2], columns[3]);
+                    }
+                    for (int channel = 0; channel < sums.length; channel++) {
+                        for (int x = 0; x < resolution; x++) {
+                            for (int column = cellLeft[x]; column < cellLeft[x + 1]; column++) {
+                                sums[channel][x] += columns[channel][column];
+                            }
+                        }
+                    }
+                }
+                int rows = Math.max(0, bottom - top);
+                for (int x = 0; x < resolution; x++) {
+                    long white = cellPixels - (long) rows * (cellLeft[x + 1] - cellLeft[x]);
+                    brightness[row][x] = cellBrightness(sums[0][x] + white * grayCode(WHITE), cellPixels);
+                    colors[row][x] = OPAQUE |
+                            average(sums[1][x] + white * 0xFF, cellPixels) << 16 |
+                            average(sums[2][x] + white * 0xFF, cellPixels) << 8 |
+                            average(sums[3][x] + white * 0xFF, cellPixels);
                 }
-                subImages[j][i]  = new Image(subImage,pixelDim,pixelDim);
             }
-        }
-        return subImages;
+        });
+        return new ColoredCells(brightness, colors);
     }
-    
+
     /**
-     * Calculates the brightnessof each sub-image (pixel) of the image.
-     * @param resolution The resolution of the sub-images.
-     * @return A 2D array of doubles, representing the brightness of each sub-image. An array of rows!
+     * @return the rounded average of a channel over a cell.
      */
-    public double[][] getImageBrightness(int resolution){
-        Image[][] subImages = getSubImages(resolution);
-        double[][] brightness = 
-        new double[resolution][bufferedImage.getHeight()*resolution/bufferedImage.getWidth()];
-        for (int x = 0; x < resolution; x++) {
-            for (int y = 0; 
-                y < (bufferedImage.getHeight() * resolution / bufferedImage.getWidth());
-                y++) {
-                brightness[y][x] = getPixelBrightness(subImages[y][x]);
-            }
-        }
-        return brightness;
+    private static int average(long channelSum, long pixels) {
+        return (int) ((channelSum + pixels / 2) / pixels);
     }
 }
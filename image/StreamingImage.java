@@ -0,0 +1,418 @@
+package image;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageTypeSpecifier;
+import javax.imageio.event.IIOReadUpdateListener;
+import javax.imageio.metadata.IIOMetadata;
+import javax.imageio.metadata.IIOMetadataNode;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.ComponentSampleModel;
+import java.awt.image.MultiPixelPackedSampleModel;
+import java.awt.image.Raster;
+import java.awt.image.SampleModel;
+import java.awt.image.WritableRaster;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.function.Consumer;
+
+import org.w3c.dom.NodeList;
+
+/**
+ * An image file read a few rows at a time, for images too large to hold in memory.
+ * The brightness is computed a row of cells at a time, so the memory used depends on the
+ * image width, not on the whole image.
+ * PNG that is not interlaced and JPEG that is not progressive are decoded in a single pass,
+ * followed row by row into an image holding a single row. Other images are read in strips of
+ * at most a given number of (sampled) pixel rows, each a separate read, which their readers may
+ * decode from the top of the image.
+ * Without subsampling the brightness is identical to that of PrepareImage.
+ */
+public class StreamingImage implements Closeable {
+
+    /**
+     * The default number of sampled pixel rows read at once.
+     */
+    public static final int DEFAULT_STRIP_ROWS = 256;
+    private static final long WHITE_GRAY = PrepareImage.grayCode(PrepareImage.WHITE);
+    private static final String PNG_METADATA = "javax_imageio_png_1.0";
+    private static final String JPEG_METADATA = "javax_imageio_jpeg_image_1.0";
+    private static final String NOT_INTERLACED = "none";
+    private static final String PROGRESSIVE = "2";
+
+    private final ImageInputStream input;
+    private final ImageReader reader;
+    private final int width;
+    private final int height;
+    private final int stripRows;
+    private final boolean powerOfTwoPadding;
+    private final GrayKernel kernel = GrayKernel.get();
+
+    /**
+     * Constructor for the StreamingImage class. Reads only the header of the file.
+     * @param filename The name of the file to be read.
+     * @throws IOException If the file is not found or its format is not supported.
+     */
+    public StreamingImage(String filename) throws IOException {
+        this(filename, DEFAULT_STRIP_ROWS, true);
+    }
+
+    /**
+     * Constructor for the StreamingImage class. Reads only the header of the file.
+     * @param filename The name of the file to be read.
+     * @param stripRows The number of sampled pixel rows read at once, by the images read in strips.
+     * @param powerOfTwoPadding Whether to lay the cells out as PrepareImage does with or without
+     *                          padding to the nearest powers of 2.
+     * @throws IOException If the file is not found or its format is not supported.
+     */
+    public StreamingImage(String filename, int stripRows, boolean powerOfTwoPadding) throws IOException {
+        if (stripRows < 1) {
+            throw new IllegalArgumentException("strip rows must be positive.");
+        }
+        File file = new File(filename);
+        this.input = file.isFile() ? ImageIO.createImageInputStream(file) : null;
+        if (input == null) {
+            throw new IOException("Can't read input file!");
+        }
+        Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+        if (!readers.hasNext()) {
+            input.close();
+            throw new IOException("Unsupported image format");
+        }
+        this.reader = readers.next();
+        reader.setInput(input, false, true);
+        this.width = reader.getWidth(0);
+        this.height = reader.getHeight(0);
+        this.stripRows = stripRows;
+        this.powerOfTwoPadding = powerOfTwoPadding;
+    }
+
+    /**
+     * Returns the width of the image.
+     * @return The width of the image.
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * Returns the height of the image.
+     * @return The height of the image.
+     */
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Calculates the brightness of the image a row of cells at a time, top to bottom.
+     * The cells are laid out as in PrepareImage.getImageBrightness, over the image
+     * buffered with white.
+     * @param resolution The number of cells along the image width.
+     * @param subsampling Reads only every subsampling-th pixel in each direction, a power of 2.
+     *                    1 reads every pixel.
+     * @param rows Receives the brightness of each row of cells, a new array each time.
+     * @throws IOException If the image could not be read.
+     * @throws IllegalArgumentException If the resolution or subsampling are not valid.
+     */
+    public void forEachBrightnessRow(int resolution, int subsampling, Consumer<double[]> rows)
+            throws IOException, IllegalArgumentException {
+        if (subsampling < 1 || Integer.bitCount(subsampling) != 1) {
+            throw new IllegalArgumentException("bad subsampling.");
+        }
+        CellLayout layout = powerOfTwoPadding ? CellLayout.powerOfTwo(width, height, resolution) :
+                CellLayout.minimal(width, height, resolution);
+        int pixelDim = layout.pixelDim();
+        int step = Math.min(subsampling, pixelDim);
+        // Sample the pixels whose buffered coordinates are multiples of step,
+        // the number of samples along each side of a cell is then fixed by the layout.
+        int xOffset = Math.floorMod(-layout.sideBuffer(), step);
+        int yOffset = Math.floorMod(-layout.topBuffer(), step);
+        int sampledWidth = Math.max(0, (width - xOffset + step - 1) / step);
+        // the pixel rows below the last row of cells are not read
+        int usedHeight = Math.min(height, layout.rows() * pixelDim - layout.topBuffer());
+        CellRows cellRows = new CellRows(layout, resolution, step, xOffset, sampledWidth, rows);
+        if (sampledWidth > 0) {
+            ImageTypeSpecifier type = reader.getImageTypes(0).next();
+            boolean followRows = decodesRowsInOrder() && rowImage(type, sampledWidth, 1) != null;
+            int rowsPerRead = followRows ? (Integer.MAX_VALUE - 1) / sampledWidth : stripRows;
+            for (int start = yOffset; start < usedHeight; start += rowsPerRead * step) {
+                int end = (int) Math.min(usedHeight, start + (long) rowsPerRead * step);
+                ImageReadParam param = reader.getDefaultReadParam();
+                param.setSourceRegion(new Rectangle(0, start, width, end - start));
+                param.setSourceSubsampling(step, step, xOffset, 0);
+                if (followRows) {
+                    readRows(param, type, start, step, (end - start + step - 1) / step, cellRows);
+                } else {
+                    readStrip(param, start, step, cellRows);
+                }
+            }
+        }
+        cellRows.finish();
+    }
+
+    /**
+     * Whether the reader decodes every row of the image once, top to bottom, so a read can be
+     * followed row by row as it is decoded: PNG that is not interlaced, and JPEG that is not
+     * progressive.
+     */
+    private boolean decodesRowsInOrder() throws IOException {
+        IIOMetadata metadata = reader.getImageMetadata(0);
+        if (metadata == null || metadata.getNativeMetadataFormatName() == null) {
+            return false;
+        }
+        String format = metadata.getNativeMetadataFormatName();
+        IIOMetadataNode root = (IIOMetadataNode) metadata.getAsTree(format);
+        if (format.equals(PNG_METADATA)) {
+            return NOT_INTERLACED.equals(attribute(root, "IHDR", "interlaceMethod"));
+        }
+        if (format.equals(JPEG_METADATA)) {
+            return !PROGRESSIVE.equals(attribute(root, "sof", "process"));
+        }
+        return false;
+    }
+
+    private static String attribute(IIOMetadataNode root, String element, String attribute) {
+        NodeList nodes = root.getElementsByTagName(element);
+        return nodes.getLength() == 0 ? null : ((IIOMetadataNode) nodes.item(0)).getAttribute(attribute);
+    }
+
+    /**
+     * Creates an image of the type the reader decodes to, whose rows all share the storage of
+     * a single row: the scanline stride is 0.
+     * @return The image, or null if the type is not one whose rows can be shared.
+     */
+    private static BufferedImage rowImage(ImageTypeSpecifier type, int width, int height) {
+        SampleModel row = type.getSampleModel(width, 1);
+        SampleModel shared;
+        if (row instanceof ComponentSampleModel component) {
+            shared = new ComponentSampleModel(component.getDataType(), width, height,
+                    component.getPixelStride(), 0, component.getBankIndices(), component.getBandOffsets());
+        } else if (row instanceof MultiPixelPackedSampleModel packed) {
+            shared = new MultiPixelPackedSampleModel(packed.getDataType(), width, height,
+                    packed.getPixelBitStride(), 0, packed.getDataBitOffset());
+        } else {
+            return null;
+        }
+        ColorModel colorModel = type.getColorModel();
+        WritableRaster raster = Raster.createWritableRaster(shared, row.createDataBuffer(), null);
+        return new BufferedImage(colorModel, raster, colorModel.isAlphaPremultiplied(), null);
+    }
+
+    /**
+     * Reads a region in a single pass, adding each sampled row as soon as it is decoded, into
+     * an image that holds a single row.
+     * @param start The first pixel row of the region, sampled.
+     * @param sampledRows The number of sampled rows in the region.
+     */
+    private void readRows(ImageReadParam param, ImageTypeSpecifier type, int start, int step,
+                          int sampledRows, CellRows cellRows) throws IOException {
+        BufferedImage image = rowImage(type, cellRows.sampledWidth, sampledRows);
+        param.setDestination(image);
+        int[] line = new int[cellRows.sampledWidth];
+        IIOReadUpdateListener listener = new RowListener() {
+            @Override
+            public void imageUpdate(ImageReader source, BufferedImage theImage, int minX, int minY,
+                                    int width, int height, int periodX, int periodY, int[] bands) {
+                theImage.getRGB(0, minY, line.length, 1, line, 0, line.length);
+                cellRows.addLine(start + minY * step, line, 0);
+            }
+        };
+        reader.addIIOReadUpdateListener(listener);
+        try {
+            reader.read(0, param);
+        } finally {
+            reader.removeIIOReadUpdateListener(listener);
+        }
+    }
+
+    /**
+     * Reads a strip of rows into an image, then adds its rows. Readers that cannot start
+     * decoding at the strip decode every row above it again, so the whole image is decoded in
+     * time quadratic in its height, for the formats that are not followed row by row.
+     * @param start The first pixel row of the strip, sampled.
+     */
+    private void readStrip(ImageReadParam param, int start, int step, CellRows cellRows)
+            throws IOException {
+        BufferedImage strip = reader.read(0, param);
+        int stripWidth = strip.getWidth();
+        int stripHeight = strip.getHeight();
+        int[] stripPixels = cellRows.stripPixels(stripWidth * stripHeight);
+        strip.getRGB(0, 0, stripWidth, stripHeight, stripPixels, 0, stripWidth);
+        for (int line = 0; line < stripHeight; line++) {
+            cellRows.addLine(start + line * step, stripPixels, line * stripWidth);
+        }
+    }
+
+    /**
+     * Receives only the updates of the decoded rows.
+     */
+    private abstract static class RowListener implements IIOReadUpdateListener {
+        @Override
+        public void passStarted(ImageReader source, BufferedImage theImage, int pass, int minPass,
+                                int maxPass, int minX, int minY, int periodX, int periodY, int[] bands) {}
+
+        @Override
+        public void passComplete(ImageReader source, BufferedImage theImage) {}
+
+        @Override
+        public void thumbnailPassStarted(ImageReader source, BufferedImage theThumbnail, int pass,
+                                         int minPass, int maxPass, int minX, int minY, int periodX,
+                                         int periodY, int[] bands) {}
+
+        @Override
+        public void thumbnailUpdate(ImageReader source, BufferedImage theThumbnail, int minX, int minY,
+                                    int width, int height, int periodX, int periodY, int[] bands) {}
+
+        @Override
+        public void thumbnailPassComplete(ImageReader source, BufferedImage theThumbnail) {}
+    }
+
+    /**
+     * Sums the sampled pixel rows, given top to bottom, into their row of cells, and hands each
+     * row of cells on once all of its pixel rows were added.
+     * The pixel rows are added into columns by the GrayKernel, which each cell then sums.
+     */
+    private final class CellRows {
+        private final int pixelDim;
+        private final int topBuffer;
+        private final int cellRowCount;
+        private final int resolution;
+        private final int step;
+        private final int sampledWidth;
+        private final int[] cellLeft;
+        private final long[] cellColumnSamples;
+        private final long[] sums;
+        private final int[] columns;
+        private final Consumer<double[]> rows;
+        private int[] stripPixels;
+        private int linesInColumns;
+        private long lines;
+        private int row;
+
+        CellRows(CellLayout layout, int resolution, int step, int xOffset, int sampledWidth,
+                 Consumer<double[]> rows) {
+            this.pixelDim = layout.pixelDim();
+            this.topBuffer = layout.topBuffer();
+            this.cellRowCount = layout.rows();
+            this.resolution = resolution;
+            this.step = step;
+            this.sampledWidth = sampledWidth;
+            this.cellLeft = cellLeft(sampledWidth, xOffset, step, layout.sideBuffer(), pixelDim, resolution);
+            this.cellColumnSamples = new long[resolution];
+            for (int x = 0; x < resolution; x++) {
+                cellColumnSamples[x] = samplesIn(x * pixelDim, pixelDim, step);
+            }
+            this.sums = new long[resolution];
+            this.columns = new int[sampledWidth];
+            this.rows = rows;
+        }
+
+        /**
+         * @return An array of at least the given length for the pixels of a strip, reused.
+         */
+        int[] stripPixels(int length) {
+            if (stripPixels == null || stripPixels.length < length) {
+                stripPixels = new int[length];
+            }
+            return stripPixels;
+        }
+
+        /**
+         * Adds a sampled pixel row, below every row added before.
+         * @param y The pixel row in the image.
+         * @param pixels The packed RGB values of the sampled pixels of the row.
+         * @param offset The index of the first pixel of the row in pixels.
+         */
+        void addLine(int y, int[] pixels, int offset) {
+            int cellRow = (y + topBuffer) / pixelDim;
+            while (row < cellRow) {
+                finishRow();
+            }
+            kernel.addGrayCodes(pixels, offset, sampledWidth, columns);
+            lines++;
+            if (++linesInColumns == GrayKernel.MAX_ROWS) {
+                addColumns();
+            }
+        }
+
+        /**
+         * Hands on the rows of cells left, with white wherever no pixel row was added.
+         */
+        void finish() {
+            while (row < cellRowCount) {
+                finishRow();
+            }
+        }
+
+        private void addColumns() {
+            for (int x = 0; x < resolution; x++) {
+                for (int column = cellLeft[x]; column < cellLeft[x + 1]; column++) {
+                    sums[x] += columns[column];
+                }
+            }
+            Arrays.fill(columns, 0);
+            linesInColumns = 0;
+        }
+
+        private void finishRow() {
+            addColumns();
+            long cellRowSamples = samplesIn(row * pixelDim, pixelDim, step);
+            double[] brightness = new double[resolution];
+            for (int x = 0; x < resolution; x++) {
+                long cellSamples = cellColumnSamples[x] * cellRowSamples;
+                long samples = lines * (cellLeft[x + 1] - cellLeft[x]);
+                brightness[x] = PrepareImage.cellBrightness(
+                        sums[x] + (cellSamples - samples) * WHITE_GRAY, cellSamples);
+            }
+            Arrays.fill(sums, 0);
+            lines = 0;
+            row++;
+            rows.accept(brightness);
+        }
+    }
+
+    /**
+     * Finds the sampled columns of a strip inside each cell, which are the same for every strip.
+     * @return The columns, the columns of cell x are [cellLeft[x], cellLeft[x+1]).
+     */
+    private static int[] cellLeft(int stripWidth, int xOffset, int step, int sideBuffer,
+                                  int pixelDim, int resolution) {
+        int[] cellLeft = new int[resolution + 1];
+        int x = 0;
+        for (int cell = 0; cell <= resolution; cell++) {
+            while (x < stripWidth && (xOffset + x * step + sideBuffer) / pixelDim < cell) {
+                x++;
+            }
+            cellLeft[cell] = x;
+        }
+        return cellLeft;
+    }
+
+    /**
+     * Counts the multiples of step in [start, start+length).
+     * @param start The start of the range, not negative.
+     * @param length The length of the range.
+     * @param step The step.
+     * @return The number of multiples.
+     */
+    private static long samplesIn(int start, int length, int step) {
+        return (start + length - 1) / step - (start - 1 + step) / step + 1;
+    }
+
+    /**
+     * Closes the image file.
+     * @throws IOException If the file could not be closed.
+     */
+    @Override
+    public void close() throws IOException {
+        reader.dispose();
+        input.close();
+    }
+}
@@ -0,0 +1,252 @@
+package image_char_matching;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * An immutable snapshot of a SubImgCharMatcher: its chars, their normalized brightness and the
+ * type of rounding, frozen when the snapshot was taken. Everything but the glyph masks is computed
+ * when the snapshot is built, matching only reads, so a snapshot can be shared by any number of
+ * threads without locks. The glyph masks are gathered on the first match by shape, a thread that
+ * races another to it gathers the same masks. Later changes to the matcher do not affect the snapshot.
+ */
+public final class CharMatcherSnapshot {
+    /**
+     * The number of equal buckets [0,1] is split into in the lookup table
+     */
+    private static final int LOOKUP_BUCKETS = 4096;
+    /**
+     * Marks a bucket of the lookup table whose brightnesses do not all round to the same char
+     */
+    private static final char UNRESOLVED = 0;
+    /**
+     * The normalized brightnesses in ascending order, and the char of each one
+     */
+    private final double[] sortedBrightness;
+    private final char[] sortedChars;
+    /**
+     * The type of rounding, one of the ROUND constants of SubImgCharMatcher
+     */
+    private final String typeOfRound;
+    /**
+     * The number of chars in the set, some may share their brightness with a lower char
+     */
+    private final int charCount;
+    /**
+     * For each bucket of brightness, the char it rounds to with the type of rounding,
+     * or UNRESOLVED if the bucket holds a normalized brightness or a rounding boundary.
+     */
+    private final char[] lookupTable;
+    /**
+     * All the chars in the set in ascending order, including those that share their brightness
+     * with a lower char, since they may differ in shape
+     */
+    private final char[] shapeChars;
+    /**
+     * The glyphs of shapeChars, null until the first match by shape
+     */
+    private volatile Shapes shapes;
+
+    /**
+     * The glyphs of the chars, ordered by the number of white pixels in them.
+     * Two masks differ in at least as many pixels as their counts of white pixels do, so the
+     * search can start from the glyphs with the count of the sub image and stop once the
+     * counts alone are further than the best glyph found.
+     * @param chars the chars, by ascending count.
+     * @param counts the number of white pixels in the glyph of each char.
+     * @param masks the glyph masks of the chars one after the other.
+     */
+    private record Shapes(char[] chars, int[] counts, long[] masks) {}
+
+    /**
+     * Builds the snapshot, and its lookup table.
+     * @param sortedBrightness the normalized brightnesses in ascending order, not copied.
+     * @param sortedChars the char of each brightness, not copied.
+     * @param typeOfRound the type of rounding.
+     * @param allChars all the chars in the set in ascending order, not copied.
+     */
+    CharMatcherSnapshot(double[] sortedBrightness, char[] sortedChars, String typeOfRound, char[] allChars) {
+        this.sortedBrightness = sortedBrightness;
+        this.sortedChars = sortedChars;
+        this.typeOfRound = typeOfRound;
+        this.charCount = allChars.length;
+        this.shapeChars = allChars;
+        this.lookupTable = sortedChars.length == 0 ? null : buildLookupTable();
+    }
+
+    /**
+     * Given a value of brightness for the sub image, the method will
+     * return the char from the set of chars, with the closest rounded brightness
+     * Given a few chars with the same brightness this method will return the one
+     * with the lowest ASCII value.
+     * @param brightness the brightness of the sub image
+     * @return the char that is the closest to the brightness
+     */
+    public char getCharByImageBrightness(double brightness){
+        if (lookupTable != null && brightness >= 0 && brightness <= 1){
+            char c = lookupTable[(int)(brightness * LOOKUP_BUCKETS)];
+            if (c != UNRESOLVED){
+                return c;
+            }
+        }
+        return sortedChars[round(brightness)];
+    }
+
+    /**
+     * Given the bitmask of a sub image, thresholded the way GlyphMask packs the glyphs,
+     * the method will return the char whose glyph differs from it in the fewest pixels.
+     * Given a few chars at the same distance this method will return the one
+     * with the lowest ASCII value.
+     * @param mask the bitmask of the sub image, GlyphMask.WORDS longs
+     * @return the char whose shape is the closest to the sub image
+     */
+    public char getCharByShape(long[] mask){
+        Shapes glyphs = getShapes();
+        int count = whitePixels(mask);
+        int below = Arrays.binarySearch(glyphs.counts(), count);
+        below = below >= 0 ? below : -below - 1;
+        int above = below;
+        below--;
+        // the first visit is the glyph whose count is the closest to the sub image
+        char best = 0;
+        int bestDistance = Integer.MAX_VALUE;
+        while (below >= 0 || above < glyphs.chars().length){
+            boolean takeAbove = below < 0 || above < glyphs.chars().length &&
+                    glyphs.counts()[above] - count <= count - glyphs.counts()[below];
+            int i = takeAbove ? above++ : below--;
+            if (Math.abs(glyphs.counts()[i] - count) > bestDistance){
+                break;
+            }
+            int distance = GlyphMask.distance(mask, glyphs.masks(), i * GlyphMask.WORDS);
+            if (distance < bestDistance || distance == bestDistance && glyphs.chars()[i] < best){
+                best = glyphs.chars()[i];
+                bestDistance = distance;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Rounds a value of brightness to the normalized brightness of the char it is matched to,
+     * the way getCharByImageBrightness rounds it, so matching the result gives that same char.
+     * @param brightness the brightness of the sub image
+     * @return the normalized brightness of the matched char
+     */
+    public double quantize(double brightness){
+        return sortedBrightness[round(brightness)];
+    }
+
+    /**
+     * @return the number of distinct normalized brightnesses, the levels brightness is matched to.
+     */
+    public int levels() {
+        return sortedBrightness.length;
+    }
+
+    /**
+     * @return the number of chars in the set when the snapshot was taken.
+     */
+    public int size() {
+        return charCount;
+    }
+
+    /**
+     * @return the type of rounding, one of the ROUND constants of SubImgCharMatcher.
+     */
+    public String getTypeOfRound() {
+        return typeOfRound;
+    }
+
+    /**
+     * Gathers the glyphs of the chars on first use, so snapshots that only match by
+     * brightness never render a glyph.
+     * @return the glyphs of shapeChars, ordered by their count of white pixels.
+     */
+    private Shapes getShapes(){
+        Shapes glyphs = shapes;
+        if (glyphs != null){
+            return glyphs;
+        }
+        Character[] byCount = new Character[shapeChars.length];
+        for (int i = 0; i < shapeChars.length; i++){
+            byCount[i] = shapeChars[i];
+        }
+        // stable, so chars of the same count stay in ascending order
+        Arrays.sort(byCount, Comparator.comparingInt(c -> whitePixels(GlyphMask.of(c))));
+        char[] chars = new char[byCount.length];
+        int[] counts = new int[byCount.length];
+        long[] masks = new long[byCount.length * GlyphMask.WORDS];
+        for (int i = 0; i < byCount.length; i++){
+            long[] mask = GlyphMask.of(byCount[i]);
+            chars[i] = byCount[i];
+            counts[i] = whitePixels(mask);
+            System.arraycopy(mask, 0, masks, i * GlyphMask.WORDS, GlyphMask.WORDS);
+        }
+        glyphs = new Shapes(chars, counts, masks);
+        shapes = glyphs;
+        return glyphs;
+    }
+
+    /**
+     * @return the number of set bits, white pixels, in a mask.
+     */
+    private static int whitePixels(long[] mask){
+        int count = 0;
+        for (long word : mask){
+            count += Long.bitCount(word);
+        }
+        return count;
+    }
+
+    /**
+     * Builds the lookup table for the chars and type of rounding.
+     * A bucket gets a char only if both of its ends round to it and no normalized
+     * brightness falls inside it, since rounding is monotonic this means
+     * every brightness in the bucket rounds to that char.
+     */
+    private char[] buildLookupTable(){
+        char[] table = new char[LOOKUP_BUCKETS + 1];
+        for (int i = 0; i < LOOKUP_BUCKETS; i++){
+            double low = (double) i / LOOKUP_BUCKETS;
+            double high = (double) (i + 1) / LOOKUP_BUCKETS;
+            int lowIndex = round(low);
+            int next = Arrays.binarySearch(sortedBrightness, low);
+            next = next >= 0 ? next : -next - 1;
+            boolean holdsBrightness = next < sortedBrightness.length && sortedBrightness[next] < high;
+            if (!holdsBrightness && lowIndex == round(Math.nextDown(high))){
+                table[i] = sortedChars[lowIndex];
+            }
+            else {
+                table[i] = UNRESOLVED;
+            }
+        }
+        table[LOOKUP_BUCKETS] = sortedChars[round(1.0)];
+        return table;
+    }
+
+    /**
+     * Rounds the brightness we look for by the chosen method
+     * @param brightness the brightness that we want to round
+     * @return the index of the rounded brightness in sortedBrightness
+     */
+    private int round(double brightness) {
+        int found = Arrays.binarySearch(sortedBrightness, brightness);
+        if (found >= 0){
+            return found;
+        }
+        // the first value larger than the brightness, the largest value in the maximum case
+        int lowerEstimation = Math.min(-found - 1, sortedBrightness.length - 1);
+        // the last value smaller than the brightness, or the minimum if there is none
+        int upperEstimation = Math.max(-found - 2, 0);
+        switch(this.typeOfRound){
+            case SubImgCharMatcher.ROUND_UP:
+                return upperEstimation;
+            case SubImgCharMatcher.ROUND_DOWN:
+                return lowerEstimation;
+            default:
+                double upperDelta = Math.abs(brightness - sortedBrightness[upperEstimation]);
+                double lowerDelta = Math.abs(brightness - sortedBrightness[lowerEstimation]);
+                return (upperDelta<lowerDelta)? upperEstimation:lowerEstimation;
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package image_char_matching;
+
+/**
+ * Glyphs made of dots, which show several sub images per char instead of one: the Unicode
+ * braille patterns, 2x4 dots, and the quadrant block elements, 2x2 quadrants.
+ * A char covers SUB_COLUMNS x SUB_ROWS square sub images, the shape of a console char, and each
+ * dot covers a block of them. A dot is set when its sub images are darker than a threshold, and
+ * the bits of the set dots are the glyph: added to the code point of the blank braille pattern,
+ * or indexing the 16 quadrant elements. No brightness is searched for.
+ */
+public final class DotGlyphs {
+
+    /**
+     * The number of sub images along the width of a char
+     */
+    public static final int SUB_COLUMNS = 2;
+    /**
+     * The number of sub images along the height of a char
+     */
+    public static final int SUB_ROWS = 4;
+    /**
+     * The name of the braille patterns
+     */
+    public static final String BRAILLE_NAME = "braille";
+    /**
+     * The name of the quadrant block elements
+     */
+    public static final String QUADRANT_NAME = "quadrant";
+    private static final double WHITE = 1;
+    private static final char BRAILLE_BLANK = '\u2800';
+    /**
+     * The bit of each braille dot, row after row: dots 1, 2, 3 and 7 run down the left
+     * column and dots 4, 5, 6 and 8 down the right one.
+     */
+    private static final int[] BRAILLE_BITS = {0x01, 0x08, 0x02, 0x10, 0x04, 0x20, 0x40, 0x80};
+    /**
+     * The bit of each quadrant, row after row, and the element of each set of quadrants.
+     */
+    private static final int[] QUADRANT_BITS = {0x1, 0x2, 0x4, 0x8};
+    private static final String QUADRANTS = " \u2598\u259D\u2580\u2596\u258C\u259E\u259B" +
+            "\u2597\u259A\u2590\u259C\u2584\u2599\u259F\u2588";
+
+    /**
+     * Braille patterns, a dot per sub image.
+     */
+    public static final DotGlyphs BRAILLE = new DotGlyphs(BRAILLE_NAME, BRAILLE_BITS, null);
+    /**
+     * Quadrant block elements, a quadrant per 1x2 sub images.
+     */
+    public static final DotGlyphs QUADRANT = new DotGlyphs(QUADRANT_NAME, QUADRANT_BITS, QUADRANTS);
+
+    private final String name;
+    private final int[] bits;
+    /**
+     * The glyph of each set of dots, or null for the braille patterns, which are computed.
+     */
+    private final String glyphs;
+    /**
+     * The number of sub images along the height of a dot
+     */
+    private final int dotHeight;
+
+    private DotGlyphs(String name, int[] bits, String glyphs) {
+        this.name = name;
+        this.bits = bits;
+        this.glyphs = glyphs;
+        this.dotHeight = SUB_ROWS * SUB_COLUMNS / bits.length;
+    }
+
+    /**
+     * Returns the glyphs of the given name.
+     * @param name BRAILLE_NAME or QUADRANT_NAME.
+     * @return the glyphs.
+     * @throws IllegalArgumentException if there are no glyphs of that name.
+     */
+    public static DotGlyphs forName(String name) throws IllegalArgumentException {
+        return switch (name) {
+            case BRAILLE_NAME -> BRAILLE;
+            case QUADRANT_NAME -> QUADRANT;
+            default -> throw new IllegalArgumentException("no such glyphs.");
+        };
+    }
+
+    /**
+     * @return the name of the glyphs.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Returns the glyph of a set of dots.
+     * @param dots the bits of the set dots.
+     * @return the glyph.
+     */
+    public char glyph(int dots) {
+        return glyphs == null ? (char) (BRAILLE_BLANK + dots) : glyphs.charAt(dots);
+    }
+
+    /**
+     * Returns the mean brightness of the sub images, the threshold that sets the darker half of
+     * the dots of an evenly lit image.
+     * @param brightness the brightness of the sub images.
+     * @return the mean brightness.
+     */
+    public static double meanBrightness(double[][] brightness) {
+        double sum = 0;
+        for (double[] row : brightness) {
+            for (double value : row) {
+                sum += value;
+            }
+        }
+        return sum / ((double) brightness.length * brightness[0].length);
+    }
+
+    /**
+     * Makes the chars of sub images, SUB_COLUMNS x SUB_ROWS sub images per char. The sub images
+     * below the last row count as white.
+     * @param brightness the brightness of the sub images, an even number of them per row.
+     * @param threshold the brightness below which a dot is set.
+     * @return the chars, a row of them per SUB_ROWS rows of sub images.
+     */
+    public char[][] toGlyphs(double[][] brightness, double threshold) {
+        int rows = (brightness.length + SUB_ROWS - 1) / SUB_ROWS;
+        int columns = brightness[0].length / SUB_COLUMNS;
+        double dotThreshold = threshold * dotHeight;
+        char[][] chars = new char[rows][columns];
+        for (int y = 0; y < rows; y++) {
+            for (int x = 0; x < columns; x++) {
+                int dots = 0;
+                for (int dot = 0; dot < bits.length; dot++) {
+                    int top = y * SUB_ROWS + dot / SUB_COLUMNS * dotHeight;
+                    int column = x * SUB_COLUMNS + dot % SUB_COLUMNS;
+                    double sum = 0;
+                    for (int sub = top; sub < top + dotHeight; sub++) {
+                        sum += sub < brightness.length ? brightness[sub][column] : WHITE;
+                    }
+                    if (sum < dotThreshold) {
+                        dots |= bits[dot];
+                    }
+                }
+                chars[y][x] = glyph(dots);
+            }
+        }
+        return chars;
+    }
+}
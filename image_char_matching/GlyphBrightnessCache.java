@@ -0,0 +1,137 @@
+package image_char_matching;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Logger;
+
+/**
+ * A process-wide cache of the brightness of rendered chars, shared by all the
+ * SubImgCharMatcher instances, so each char is rendered at most once per font and resolution.
+ * On first use, the cache loads the precomputed table from DEFAULT_CACHE_FILE if it exists,
+ * in which case the chars in it are never rendered at all.
+ * The cache is safe for concurrent use.
+ */
+public class GlyphBrightnessCache {
+
+    /**
+     * The file the precomputed table is loaded from, relative to the working directory
+     */
+    public static final String DEFAULT_CACHE_FILE = "glyph_brightness.cache";
+    /**
+     * The separator between the fields of a line in the table file
+     */
+    private static final String SEPARATOR = "\t";
+    /**
+     * The number of fields in a line of the table file
+     */
+    private static final int FIELDS = 4;
+
+    /**
+     * The key of a rendered char
+     */
+    private record GlyphKey(String fontName, int pixelResolution, char c) {}
+
+    /**
+     * the map holding the brightness of each rendered char
+     */
+    private static final Map<GlyphKey, Double> cache = loadTable(Paths.get(DEFAULT_CACHE_FILE));
+
+    private GlyphBrightnessCache() {}
+
+    /**
+     * Returns the brightness of a char in the default font and resolution of CharConverter,
+     * rendering it only if it is not in the cache yet.
+     * @param c the char
+     * @return the brightness of the char before normalization
+     */
+    public static double getBrightness(char c) {
+        return getBrightness(CharConverter.FONT_NAME, CharConverter.DEFAULT_PIXEL_RESOLUTION, c);
+    }
+
+    /**
+     * Returns the brightness of a char, rendering it only if it is not in the cache yet.
+     * @param fontName the font to render the char in
+     * @param pixelResolution the side length in pixels of the rendered char
+     * @param c the char
+     * @return the brightness of the char before normalization
+     */
+    public static double getBrightness(String fontName, int pixelResolution, char c) {
+        return cache.computeIfAbsent(new GlyphKey(fontName, pixelResolution, c),
+                key -> renderBrightness(key.fontName(), key.pixelResolution(), key.c()));
+    }
+
+    /**
+     * Renders all the chars in [LOWER_ASCII, UPPER_ASCII] in the default font and resolution,
+     * and writes the whole cache as a table file.
+     * @param fileName the file to write the table to
+     * @throws IOException if the file could not be written
+     */
+    public static void warm(String fileName) throws IOException {
+        for (char c = SubImgCharMatcher.LOWER_ASCII; c <= SubImgCharMatcher.UPPER_ASCII; c++) {
+            getBrightness(c);
+        }
+        try (BufferedWriter writer = Files.newBufferedWriter(Paths.get(fileName), StandardCharsets.UTF_8)) {
+            for (Map.Entry<GlyphKey, Double> entry : cache.entrySet()) {
+                GlyphKey key = entry.getKey();
+                writer.write(key.fontName() + SEPARATOR + key.pixelResolution() + SEPARATOR +
+                        (int) key.c() + SEPARATOR + entry.getValue());
+                writer.newLine();
+            }
+        }
+    }
+
+    /**
+     * Renders a char and counts its pixels, the same way SubImgCharMatcher always has.
+     * @param fontName the font to render the char in
+     * @param pixelResolution the side length in pixels of the rendered char
+     * @param c the char
+     * @return the brightness of the char before normalization
+     */
+    private static double renderBrightness(String fontName, int pixelResolution, char c) {
+        double brightnessCounter = 0;
+        boolean[][] charArr = CharConverter.convertToBoolArray(c, fontName, pixelResolution);
+        for(int i = 0;i<pixelResolution;i++){
+            for(int j=0;j<pixelResolution;j++){
+                if (charArr[i][j]) {
+                    brightnessCounter=brightnessCounter+1;
+                }
+            }
+        }
+        return brightnessCounter/(double)pixelResolution;
+    }
+
+    /**
+     * Loads a table file into a new cache map.
+     * A missing file gives an empty map, a malformed one is ignored with a warning.
+     * @param path the table file
+     * @return the cache map
+     */
+    private static Map<GlyphKey, Double> loadTable(Path path) {
+        Map<GlyphKey, Double> table = new ConcurrentHashMap<>();
+        if (!Files.isRegularFile(path)) {
+            return table;
+        }
+        try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] fields = line.split(SEPARATOR);
+                if (fields.length != FIELDS) {
+                    throw new IllegalArgumentException("bad line \"" + line + "\"");
+                }
+                table.put(new GlyphKey(fields[0], Integer.parseInt(fields[1]),
+                        (char) Integer.parseInt(fields[2])), Double.parseDouble(fields[3]));
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            Logger.getGlobal().warning(String.format("Ignoring glyph cache \"%s\": %s", path, e.getMessage()));
+            table.clear();
+        }
+        return table;
+    }
+}
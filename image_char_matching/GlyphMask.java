@@ -0,0 +1,57 @@
+package image_char_matching;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The shapes of the chars as packed bitmasks, for matching sub images to chars by shape instead
+ * of only by brightness. A char is rendered at the default font and resolution of CharConverter,
+ * SIDE x SIDE pixels, and packed into WORDS longs as CharConverter.convertToMask lays them out:
+ * a set bit is a white pixel. The distance between two masks is the number of pixels they
+ * differ in, counted with Long.bitCount.
+ * The masks are cached process-wide, so each char is rendered at most once, and the cache is
+ * safe for concurrent use.
+ */
+public final class GlyphMask {
+
+    /**
+     * The side length of a mask, in pixels
+     */
+    public static final int SIDE = CharConverter.DEFAULT_PIXEL_RESOLUTION;
+    /**
+     * The number of longs a mask is packed into
+     */
+    public static final int WORDS = (SIDE * SIDE + Long.SIZE - 1) / Long.SIZE;
+
+    /**
+     * the map holding the mask of each rendered char
+     */
+    private static final Map<Character, long[]> cache = new ConcurrentHashMap<>();
+
+    private GlyphMask() {}
+
+    /**
+     * Returns the mask of a char, rendering it only if it is not in the cache yet.
+     * @param c the char
+     * @return the mask of the char, shared, it must not be changed
+     */
+    public static long[] of(char c) {
+        return cache.computeIfAbsent(c,
+                key -> CharConverter.convertToMask(key, CharConverter.FONT_NAME, SIDE));
+    }
+
+    /**
+     * Counts the pixels two masks differ in.
+     * @param mask a mask of WORDS longs
+     * @param masks an array holding masks one after the other
+     * @param offset the index in masks of the first long of the other mask
+     * @return the Hamming distance between the masks
+     */
+    static int distance(long[] mask, long[] masks, int offset) {
+        int distance = 0;
+        for (int i = 0; i < WORDS; i++) {
+            distance += Long.bitCount(mask[i] ^ masks[offset + i]);
+        }
+        return distance;
+    }
+}
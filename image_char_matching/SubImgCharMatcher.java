@@ -72,6 +72,15 @@ public class SubImgCharMatcher {
      * The type of rounding that we want to use
      */
     private String typeOfRound;
+    /**
+     * The normalized brightnesses in ascending order, and the char of each one
+     */
+    private double[] sortedBrightness;
+    private char[] sortedChars;
+    /**
+     * The snapshot of the current chars and type of rounding, null when it needs to be rebuilt.
+     */
+    private CharMatcherSnapshot snapshot;
 
 
 
@@ -101,13 +110,31 @@ public class SubImgCharMatcher {
      * @return the char that is the closest to the brightness
      */
     public char getCharByImageBrightness(double brightness){
+        return snapshot().getCharByImageBrightness(brightness);
+    }
+
+    /**
+     * Returns an immutable snapshot of the current chars and type of rounding, which can be
+     * shared between threads. The snapshot is kept until the chars or the type of rounding change,
+     * so taking it again without changes is free. This matcher itself is not thread safe.
+     * @return the snapshot.
+     */
+    public CharMatcherSnapshot snapshot(){
         if(!(addedChars.isEmpty() && removedChars.isEmpty())){
             normalizeBrightness();
             addedChars.clear();
             removedChars.clear();
         }
-        double rounded =  round(brightness);
-        return normalizedBrightness.get(rounded);
+        if (snapshot == null){
+            char[] allChars = new char[charSet.size()];
+            int i = 0;
+            for (char c : charSet){
+                allChars[i++] = c;
+            }
+            Arrays.sort(allChars);
+            snapshot = new CharMatcherSnapshot(sortedBrightness, sortedChars, typeOfRound, allChars);
+        }
+        return snapshot;
     }
 
     /**
@@ -155,7 +182,10 @@ public class SubImgCharMatcher {
      * @param typeOfRound the type of rounding that we want to use, it can be "up", "down" or "abs"
      */
     public void setTypeOfRound(String typeOfRound){ // default abs
-        this.typeOfRound = typeOfRound;
+        if (!typeOfRound.equals(this.typeOfRound)){
+            this.typeOfRound = typeOfRound;
+            this.snapshot = null;
+        }
     }
 
     /**
@@ -176,19 +206,7 @@ public class SubImgCharMatcher {
      * @param c the char that we want to convert
      */
     private void convertChar(char c) {
-        double brightnessCounter = 0;
-        double brightnessValue ;
-        int defaultPixelNumber = CharConverter.DEFAULT_PIXEL_RESOLUTION;
-        boolean[][] charArr = CharConverter.convertToBoolArray(c);
-        for(int i = 0;i<defaultPixelNumber;i++){
-            for(int j=0;j<defaultPixelNumber;j++){
-                if (charArr[i][j]) {
-                    brightnessCounter=brightnessCounter+1;
-                }
-            }
-        }
-        brightnessValue = brightnessCounter/(double)defaultPixelNumber;
-        brightnessMap.put(c,brightnessValue); // brightness storage
+        brightnessMap.put(c, GlyphBrightnessCache.getBrightness(c)); // brightness storage
     }
 
     /**
@@ -227,6 +245,15 @@ public class SubImgCharMatcher {
                 normalizedBrightness.put(newBrightness, c);
             }
         }
+        sortedBrightness = new double[normalizedBrightness.size()];
+        sortedChars = new char[normalizedBrightness.size()];
+        int i = 0;
+        for (Map.Entry<Double,Character> entry : normalizedBrightness.entrySet()){
+            sortedBrightness[i] = entry.getKey();
+            sortedChars[i] = entry.getValue();
+            i++;
+        }
+        snapshot = null;
     }
 
     /**
@@ -249,40 +276,4 @@ public class SubImgCharMatcher {
             convertChar(i);
         }
     }
-
-    /**
-     * Rounds the brightness we look for by the chosen method
-     * @param brightness the brightness that we want to round
-     * @return the rounded brightness
-     */
-    private double round(Double brightness) {
-        double roundedBrightness;
-        double upperEstimation ;
-        if (normalizedBrightness.containsKey(brightness)){
-            return brightness;
-        }
-        // tailMap returns a value larger or equal to the key so there is no problem in the maximum case
-        double lowerEstimation = normalizedBrightness.tailMap(brightness).firstKey();
-        if(!normalizedBrightness.headMap(brightness).isEmpty()){
-            upperEstimation =  normalizedBrightness.headMap(brightness).lastKey();
-        }
-        else {
-            // it means the value we want to round is lower than the minimum or it is the minimum
-            upperEstimation = normalizedBrightness.firstKey();
-        }
-        switch(this.typeOfRound){
-            case ROUND_UP:
-                roundedBrightness = upperEstimation;
-                break;
-            case ROUND_DOWN:
-                roundedBrightness= lowerEstimation;
-                break;
-            default:
-                double upperDelta = Math.abs(brightness- upperEstimation);
-                double lowerDelta = Math.abs(brightness-lowerEstimation);
-                roundedBrightness = (upperDelta<lowerDelta)? upperEstimation:lowerEstimation;
-                break;
-        }
-        return roundedBrightness;
-    }
-}
\ No newline at end of file
+}
@@ -0,0 +1,60 @@
+package benchmark.jmh;
+
+import image.Image;
+import image.PrepareImage;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Computes the brightness of the cells of a prepared image. Each call gets a freshly prepared
+ * image, so the brightness pyramid of PrepareImage never answers from an earlier call.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class BrightnessBenchmark {
+    @Param({"640x480", "2048x1536"})
+    public String size;
+    @Param({"32", "128"})
+    public int resolution;
+
+    private Image image;
+
+    /**
+     * A prepared image used by a single call.
+     */
+    @State(Scope.Thread)
+    public static class Fresh {
+        private PrepareImage prepared;
+
+        @Setup(Level.Invocation)
+        public void prepare(BrightnessBenchmark benchmark) {
+            prepared = new PrepareImage(benchmark.image);
+        }
+    }
+
+    @Setup
+    public void generateImage() {
+        image = Stages.image(size);
+    }
+
+    @Benchmark
+    public double[][] brightness(Fresh fresh) {
+        return fresh.prepared.getImageBrightness(resolution);
+    }
+}
@@ -0,0 +1,68 @@
+package benchmark.jmh;
+
+import ascii_output.ConsoleAsciiOutput;
+import image.Image;
+import image.PrepareImage;
+import image_char_matching.CharMatcherSnapshot;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs the whole pipeline: loads a PNG image, prepares it, computes the brightness of its cells,
+ * matches them to chars and writes the art to the console, discarded.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class EndToEndBenchmark {
+    @Param({"640x480", "2048x1536"})
+    public String size;
+    @Param({"32", "128"})
+    public int resolution;
+    @Param({"10", "95"})
+    public int charset;
+    @Param({"abs", "up", "down"})
+    public String round;
+
+    private Path file;
+    private CharMatcherSnapshot matcher;
+    private ConsoleAsciiOutput console;
+
+    @Setup
+    public void writeImage() throws IOException {
+        file = Stages.imageFile(size);
+        matcher = Stages.matcher(charset, round);
+        console = new ConsoleAsciiOutput(" ", Stages.DISCARD);
+    }
+
+    @TearDown
+    public void deleteImage() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    @Benchmark
+    public char[][] endToEnd() throws IOException {
+        Image image = new Image(file.toString());
+        char[][] chars = Stages.match(new PrepareImage(image).getImageBrightness(resolution), matcher);
+        console.out(chars);
+        return chars;
+    }
+}
@@ -0,0 +1,51 @@
+package benchmark.jmh;
+
+import image.Image;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Loads a generated PNG image into an Image.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ImageLoadBenchmark {
+    @Param({"640x480", "2048x1536"})
+    public String size;
+
+    private Path file;
+
+    @Setup
+    public void writeImage() throws IOException {
+        file = Stages.imageFile(size);
+    }
+
+    @TearDown
+    public void deleteImage() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    @Benchmark
+    public Image load() throws IOException {
+        return new Image(file.toString());
+    }
+}
@@ -0,0 +1,51 @@
+package benchmark.jmh;
+
+import image.PrepareImage;
+import image_char_matching.CharMatcherSnapshot;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Matches every cell of an image to a char by its brightness.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class MatchBenchmark {
+    @Param({"640x480", "2048x1536"})
+    public String size;
+    @Param({"32", "128"})
+    public int resolution;
+    @Param({"10", "95"})
+    public int charset;
+    @Param({"abs", "up", "down"})
+    public String round;
+
+    private double[][] brightness;
+    private CharMatcherSnapshot matcher;
+
+    @Setup
+    public void prepare() {
+        brightness = new PrepareImage(Stages.image(size)).getImageBrightness(resolution);
+        matcher = Stages.matcher(charset, round);
+    }
+
+    @Benchmark
+    public char[][] match() {
+        return Stages.match(brightness, matcher);
+    }
+}
@@ -0,0 +1,70 @@
+package benchmark.jmh;
+
+import ascii_output.ConsoleAsciiOutput;
+import ascii_output.HtmlAsciiOutput;
+import image.PrepareImage;
+import image_char_matching.SubImgCharMatcher;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes the ascii art of an image to the console, discarded, and to an HTML file.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class OutputBenchmark {
+    private static final int CHARSET = SubImgCharMatcher.UPPER_ASCII - SubImgCharMatcher.LOWER_ASCII + 1;
+
+    @Param({"640x480", "2048x1536"})
+    public String size;
+    @Param({"32", "128"})
+    public int resolution;
+
+    private char[][] chars;
+    private Path htmlFile;
+    private ConsoleAsciiOutput console;
+    private HtmlAsciiOutput html;
+
+    @Setup
+    public void render() throws IOException {
+        chars = Stages.match(new PrepareImage(Stages.image(size)).getImageBrightness(resolution),
+                Stages.matcher(CHARSET, SubImgCharMatcher.ROUND_ABS));
+        htmlFile = Files.createTempFile("ascii-jmh", ".html");
+        console = new ConsoleAsciiOutput(" ", Stages.DISCARD);
+        html = new HtmlAsciiOutput(htmlFile.toString(), Stages.HTML_FONT);
+    }
+
+    @TearDown
+    public void deleteHtml() throws IOException {
+        Files.deleteIfExists(htmlFile);
+    }
+
+    @Benchmark
+    public void console() {
+        console.out(chars);
+    }
+
+    @Benchmark
+    public void html() {
+        html.out(chars);
+    }
+}
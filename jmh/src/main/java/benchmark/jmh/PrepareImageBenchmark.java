@@ -0,0 +1,43 @@
+package benchmark.jmh;
+
+import image.Image;
+import image.PrepareImage;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Prepares an image, building its summed-area table.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class PrepareImageBenchmark {
+    @Param({"640x480", "2048x1536"})
+    public String size;
+
+    private Image image;
+
+    @Setup
+    public void generateImage() {
+        image = Stages.image(size);
+    }
+
+    @Benchmark
+    public PrepareImage prepare() {
+        return new PrepareImage(image);
+    }
+}
@@ -0,0 +1,87 @@
+package benchmark.jmh;
+
+import benchmark.SyntheticImages;
+import image.Image;
+import image_char_matching.CharMatcherSnapshot;
+import image_char_matching.SubImgCharMatcher;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * The pieces of the pipeline the JMH benchmarks share, as PipelineBenchmark builds them:
+ * generated images, charsets of the first chars of the ASCII range, and matching every cell.
+ */
+final class Stages {
+    /**
+     * A stream that drops everything, standing in for the console
+     */
+    static final PrintStream DISCARD = new PrintStream(OutputStream.nullOutputStream());
+    static final String HTML_FONT = "Courier New";
+
+    private Stages() {}
+
+    /**
+     * Generates the gradient image of a size.
+     * @param size The size, as WIDTHxHEIGHT.
+     * @return The image.
+     */
+    static Image image(String size) {
+        String[] dims = size.split("x");
+        return SyntheticImages.gradient(Integer.parseInt(dims[0]), Integer.parseInt(dims[1]));
+    }
+
+    /**
+     * Writes the gradient image of a size as a PNG file, for the benchmarks of loading it.
+     * @param size The size, as WIDTHxHEIGHT.
+     * @return The file, to be deleted by the caller.
+     * @throws IOException if the file could not be written.
+     */
+    static Path imageFile(String size) throws IOException {
+        Image image = image(size);
+        BufferedImage buffered = new BufferedImage(image.getWidth(), image.getHeight(),
+                BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < image.getHeight(); y++) {
+            for (int x = 0; x < image.getWidth(); x++) {
+                buffered.setRGB(x, y, image.getRgb(x, y));
+            }
+        }
+        Path path = Files.createTempFile("ascii-jmh-" + size, ".png");
+        ImageIO.write(buffered, "png", path.toFile());
+        return path;
+    }
+
+    /**
+     * Takes a snapshot of the matcher of the first charSize chars of the ASCII range.
+     * @param charSize The number of chars.
+     * @param round The type of rounding, one of the ROUND constants of SubImgCharMatcher.
+     * @return The snapshot.
+     */
+    static CharMatcherSnapshot matcher(int charSize, String round) {
+        char[] chars = new char[charSize];
+        for (int i = 0; i < charSize; i++) {
+            chars[i] = (char) (SubImgCharMatcher.LOWER_ASCII + i);
+        }
+        SubImgCharMatcher matcher = new SubImgCharMatcher(chars);
+        matcher.setTypeOfRound(round);
+        return matcher.snapshot();
+    }
+
+    /**
+     * Maps every cell to a char, as AsciiArtAlgorithm.run does.
+     */
+    static char[][] match(double[][] brightness, CharMatcherSnapshot matcher) {
+        char[][] chars = new char[brightness.length][brightness[0].length];
+        for (int y = 0; y < brightness.length; y++) {
+            for (int x = 0; x < brightness[y].length; x++) {
+                chars[y][x] = matcher.getCharByImageBrightness(brightness[y][x]);
+            }
+        }
+        return chars;
+    }
+}
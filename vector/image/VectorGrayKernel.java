@@ -0,0 +1,84 @@
+package image;
+
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * The gray kernel on SIMD lanes, with the incubating JDK Vector API at the preferred width of
+ * the CPU. The channels are unpacked from the packed RGB ints with lanewise shifts and masks, and
+ * weighted with the integer factors of PrepareImage.grayCode, so the gray codes, and the columns
+ * they are added to, are exactly those of the scalar kernel. The tail of a span shorter than a
+ * vector is done one pixel at a time.
+ * Only loaded by GrayKernel, through reflection, when the jdk.incubator.vector module is present.
+ * Kept out of the main source root, since compiling it needs javac --add-modules jdk.incubator.vector.
+ */
+final class VectorGrayKernel extends GrayKernel {
+    private static final VectorSpecies<Integer> INTS = IntVector.SPECIES_PREFERRED;
+    private static final int RED = (int) PrepareImage.RED_FACTOR;
+    private static final int GREEN = (int) PrepareImage.GREEN_FACTOR;
+    private static final int BLUE = (int) PrepareImage.BLUE_FACTOR;
+
+    @Override
+    public String name() {
+        return "vector x" + INTS.length();
+    }
+
+    @Override
+    public void grayCodes(int[] pixels, int from, int length, int[] gray) {
+        int bound = INTS.loopBound(length);
+        for (int i = 0; i < bound; i += INTS.length()) {
+            grayCodes(IntVector.fromArray(INTS, pixels, from + i)).intoArray(gray, i);
+        }
+        for (int i = bound; i < length; i++) {
+            gray[i] = (int) PrepareImage.grayCode(pixels[from + i]);
+        }
+    }
+
+    @Override
+    public void addGrayCodes(int[] pixels, int from, int length, int[] gray) {
+        int bound = INTS.loopBound(length);
+        for (int i = 0; i < bound; i += INTS.length()) {
+            IntVector.fromArray(INTS, gray, i)
+                    .add(grayCodes(IntVector.fromArray(INTS, pixels, from + i)))
+                    .intoArray(gray, i);
+        }
+        for (int i = bound; i < length; i++) {
+            gray[i] += (int) PrepareImage.grayCode(pixels[from + i]);
+        }
+    }
+
+    @Override
+    public void addChannels(int[] pixels, int from, int length,
+                            int[] gray, int[] red, int[] green, int[] blue) {
+        int bound = INTS.loopBound(length);
+        for (int i = 0; i < bound; i += INTS.length()) {
+            IntVector rgb = IntVector.fromArray(INTS, pixels, from + i);
+            IntVector r = rgb.lanewise(VectorOperators.LSHR, 16).and(0xFF);
+            IntVector g = rgb.lanewise(VectorOperators.LSHR, 8).and(0xFF);
+            IntVector b = rgb.and(0xFF);
+            IntVector.fromArray(INTS, gray, i).add(r.mul(RED).add(g.mul(GREEN)).add(b.mul(BLUE)))
+                    .intoArray(gray, i);
+            IntVector.fromArray(INTS, red, i).add(r).intoArray(red, i);
+            IntVector.fromArray(INTS, green, i).add(g).intoArray(green, i);
+            IntVector.fromArray(INTS, blue, i).add(b).intoArray(blue, i);
+        }
+        for (int i = bound; i < length; i++) {
+            int rgb = pixels[from + i];
+            gray[i] += (int) PrepareImage.grayCode(rgb);
+            red[i] += (rgb >> 16) & 0xFF;
+            green[i] += (rgb >> 8) & 0xFF;
+            blue[i] += rgb & 0xFF;
+        }
+    }
+
+    /**
+     * Unpacks the channels of packed RGB ints and weights them into scaled gray codes.
+     */
+    private static IntVector grayCodes(IntVector rgb) {
+        IntVector red = rgb.lanewise(VectorOperators.LSHR, 16).and(0xFF);
+        IntVector green = rgb.lanewise(VectorOperators.LSHR, 8).and(0xFF);
+        IntVector blue = rgb.and(0xFF);
+        return red.mul(RED).add(green.mul(GREEN)).add(blue.mul(BLUE));
+    }
+}